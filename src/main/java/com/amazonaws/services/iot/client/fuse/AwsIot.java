@@ -18,30 +18,43 @@ package com.amazonaws.services.iot.client.fuse;
 import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
 
 import net.fusejna.ErrorCodes;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.iot.AWSIotClient;
-import com.amazonaws.services.iot.client.AWSIotDevice;
 import com.amazonaws.services.iot.client.AWSIotException;
+import com.amazonaws.services.iot.client.AWSIotMessage;
 import com.amazonaws.services.iot.client.AWSIotMqttClient;
+import com.amazonaws.services.iot.client.AWSIotQos;
+import com.amazonaws.services.iot.client.AWSIotTopic;
 import com.amazonaws.services.iot.client.fuse.node.LinkNode;
 import com.amazonaws.services.iot.client.fuse.node.Node;
+import com.amazonaws.services.iot.client.fuse.node.RefreshScheduler;
 import com.amazonaws.services.iot.client.fuse.node.certificates.CertificateNode;
 import com.amazonaws.services.iot.client.fuse.node.policies.PolicyDocumentNode;
 import com.amazonaws.services.iot.client.fuse.node.policies.PolicyNode;
 import com.amazonaws.services.iot.client.fuse.node.rules.TopicRuleActionNode;
 import com.amazonaws.services.iot.client.fuse.node.rules.TopicRuleNode;
 import com.amazonaws.services.iot.client.fuse.node.things.ThingNode;
+import com.amazonaws.services.iot.client.fuse.node.topics.MessagesNode;
 import com.amazonaws.services.iot.model.Action;
 import com.amazonaws.services.iot.model.AttachPrincipalPolicyRequest;
 import com.amazonaws.services.iot.model.AttachThingPrincipalRequest;
 import com.amazonaws.services.iot.model.Certificate;
+import com.amazonaws.services.iot.model.CertificateDescription;
 import com.amazonaws.services.iot.model.CertificateStatus;
 import com.amazonaws.services.iot.model.CreateKeysAndCertificateRequest;
 import com.amazonaws.services.iot.model.CreateKeysAndCertificateResult;
@@ -56,8 +69,12 @@ import com.amazonaws.services.iot.model.DeletePolicyRequest;
 import com.amazonaws.services.iot.model.DeletePolicyVersionRequest;
 import com.amazonaws.services.iot.model.DeleteThingRequest;
 import com.amazonaws.services.iot.model.DeleteTopicRuleRequest;
+import com.amazonaws.services.iot.model.DescribeCertificateRequest;
+import com.amazonaws.services.iot.model.DescribeCertificateResult;
 import com.amazonaws.services.iot.model.DescribeEndpointRequest;
 import com.amazonaws.services.iot.model.DescribeEndpointResult;
+import com.amazonaws.services.iot.model.DescribeThingRequest;
+import com.amazonaws.services.iot.model.DescribeThingResult;
 import com.amazonaws.services.iot.model.DetachPrincipalPolicyRequest;
 import com.amazonaws.services.iot.model.DetachThingPrincipalRequest;
 import com.amazonaws.services.iot.model.GetPolicyRequest;
@@ -93,84 +110,217 @@ import com.amazonaws.services.iot.model.UpdateCertificateRequest;
 
 public class AwsIot {
 
+    private static final Logger LOGGER = Logger.getLogger(AwsIot.class.getName());
+
     private static final int BATCH_SIZE_LIST_THINGS = 50;
     private static final int BATCH_SIZE_LIST_CERTIFICATES = 50;
     private static final int BATCH_SIZE_LIST_POLICIES = 50;
     private static final int BATCH_SIZE_LIST_TOPIC_RULES = 50;
     private static final int BATCH_SIZE_LIST_PRINCIPAL_POLICIES = 50;
+    private static final long PUBLISH_TIMEOUT = 30000;
 
     private final AWSIotClient client;
     private final AWSIotMqttClient mqttClient;
+    private final Semaphore publishPermits;
+    private final ShadowCache shadowCache;
+    private final ShadowMultiplexer shadowMultiplexer;
+    private final RefreshScheduler refreshScheduler;
+    private final long negativeTimeout;
+    private final SingleFlight<String, Object> fetches = new SingleFlight<>();
+    private final MetadataCache metadataCache;
+    // thing to certificate ids, and certificate id to policy names
+    private final RelationIndex certificateThings = new RelationIndex();
+    private final RelationIndex policyCertificates = new RelationIndex();
     private final Node root;
 
     public AwsIot(Node root, String region, String accessKeyId, String secretAccessKey, KeyStore keyStore,
             String keyPassword) {
+        this(root, region, accessKeyId, secretAccessKey, keyStore, keyPassword, new MountOptions());
+    }
+
+    public AwsIot(Node root, String region, String accessKeyId, String secretAccessKey, KeyStore keyStore,
+            String keyPassword, MountOptions options) {
         AWSCredentials awsCredentials = new BasicAWSCredentials(accessKeyId, secretAccessKey);
 
+        if (options.getCacheFile() != null) {
+            this.metadataCache = new MetadataCache(options.getCacheFile());
+            this.metadataCache.load();
+        } else {
+            this.metadataCache = null;
+        }
+
         this.client = new AWSIotClient(awsCredentials);
         this.client.withRegion(Regions.fromName(region));
 
+        this.shadowCache = new ShadowCache();
+
         String endpoint = getEndpoint();
         String clientId = UUID.randomUUID().toString();
         if (keyStore != null && keyPassword != null) {
-            this.mqttClient = new AWSIotMqttClient(endpoint, clientId, keyStore, keyPassword);
+            this.mqttClient = new MqttClient(endpoint, clientId, keyStore, keyPassword);
         } else {
-            this.mqttClient = new AWSIotMqttClient(endpoint, clientId, accessKeyId, secretAccessKey);
+            this.mqttClient = new MqttClient(endpoint, clientId, accessKeyId, secretAccessKey);
         }
 
         try {
             this.mqttClient.connect();
         } catch (AWSIotException e) {
-            throw new RuntimeException("Failed to connect to AWS IoT service", e);
+            if (metadataCache == null) {
+                throw new RuntimeException("Failed to connect to AWS IoT service", e);
+            }
+            // the cached listings can still be browsed
+            LOGGER.warning("Failed to connect to AWS IoT service, serving cached metadata only");
         }
 
         this.root = root;
+        this.publishPermits = new Semaphore(options.getMaxPendingPublishes());
+        this.shadowMultiplexer = new ShadowMultiplexer(this, shadowCache);
+        this.refreshScheduler = new RefreshScheduler(options.getMaxConcurrentRefreshes(),
+                options.getMinRefreshInterval(), options.getMaxRefreshInterval());
+        this.negativeTimeout = options.getNegativeTimeout();
     }
 
     public Node getRoot() {
         return root;
     }
 
-    public List<ThingNode> getThings(Node parent) {
-        List<ThingNode> thingNodes = new ArrayList<>();
+    public ShadowCache getShadowCache() {
+        return shadowCache;
+    }
+
+    public ShadowMultiplexer getShadowMultiplexer() {
+        return shadowMultiplexer;
+    }
 
-        String nextToken = null;
-        while (true) {
-            ListThingsRequest req = new ListThingsRequest().withMaxResults(BATCH_SIZE_LIST_THINGS);
-            if (nextToken != null) {
-                req.setNextToken(nextToken);
-            }
+    public RefreshScheduler getRefreshScheduler() {
+        return refreshScheduler;
+    }
+
+    public long getNegativeTimeout() {
+        return negativeTimeout;
+    }
+
+    public RelationIndex getCertificateThings() {
+        return certificateThings;
+    }
+
+    public RelationIndex getPolicyCertificates() {
+        return policyCertificates;
+    }
 
-            ListThingsResult res = client.listThings(req);
+    // thing names with their attributes, in listing order
+    public Map<String, Map<String, String>> getThings(final Node parent) {
+        return fetch("ListThings", new Callable<Map<String, Map<String, String>>>() {
+            @Override
+            public Map<String, Map<String, String>> call() {
+                Map<String, Map<String, String>> things = new LinkedHashMap<>();
 
-            for (ThingAttribute thing : res.getThings()) {
-                ThingNode thingNode = new ThingNode(parent, thing.getThingName());
-                thingNodes.add(thingNode);
+                List<String[]> cached = getCachedListing(parent, "things");
+                if (cached != null) {
+                    for (String[] row : cached) {
+                        things.put(row[0], (row.length > 1) ? decodeAttributes(row[1]) : null);
+                    }
+                    return things;
+                }
+                List<String[]> rows = new ArrayList<>();
+
+                String nextToken = null;
+                while (true) {
+                    ListThingsRequest req = new ListThingsRequest().withMaxResults(BATCH_SIZE_LIST_THINGS);
+                    if (nextToken != null) {
+                        req.setNextToken(nextToken);
+                    }
+
+                    ListThingsResult res = client.listThings(req);
+
+                    for (ThingAttribute thing : res.getThings()) {
+                        things.put(thing.getThingName(), thing.getAttributes());
+                        rows.add(new String[] { thing.getThingName(), encodeAttributes(thing.getAttributes()) });
+                    }
+
+                    nextToken = res.getNextToken();
+                    if (nextToken == null || res.getThings().size() < BATCH_SIZE_LIST_THINGS) {
+                        break;
+                    }
+                }
+
+                putCachedListing("things", rows);
+                return things;
             }
+        });
+    }
+
+    public List<String> getPrincipals(Node parent) {
+        final String thingName = parent.getParent().getName();
 
-            nextToken = res.getNextToken();
-            if (nextToken == null || res.getThings().size() < BATCH_SIZE_LIST_THINGS) {
-                break;
+        List<String[]> cached = getCachedListing(parent, "principals/" + thingName);
+        if (cached != null) {
+            List<String> principals = new ArrayList<>();
+            for (String[] row : cached) {
+                principals.add(row[0]);
             }
+            certificateThings.set(thingName, toCertificateIds(principals));
+            return principals;
         }
 
-        return thingNodes;
+        return fetch("ListThingPrincipals/" + thingName, new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                List<String> principals = new ArrayList<>();
+                ListThingPrincipalsRequest req = new ListThingPrincipalsRequest().withThingName(thingName);
+
+                ListThingPrincipalsResult res = client.listThingPrincipals(req);
+                principals.addAll(res.getPrincipals());
+
+                List<String[]> rows = new ArrayList<>();
+                for (String principal : principals) {
+                    rows.add(new String[] { principal });
+                }
+                putCachedListing("principals/" + thingName, rows);
+                certificateThings.set(thingName, toCertificateIds(principals));
+
+                return principals;
+            }
+        });
     }
 
-    public List<String> getPrincipals(Node parent) {
-        List<String> principals = new ArrayList<>();
-        ListThingPrincipalsRequest req = new ListThingPrincipalsRequest().withThingName(parent.getParent().getName());
+    // attributes of a single thing, null if there's no such thing
+    public Map<String, String> describeThing(final String thingName) {
+        return fetch("DescribeThing/" + thingName, new Callable<Map<String, String>>() {
+            @Override
+            public Map<String, String> call() {
+                DescribeThingRequest req = new DescribeThingRequest().withThingName(thingName);
 
-        ListThingPrincipalsResult res = client.listThingPrincipals(req);
-        principals.addAll(res.getPrincipals());
+                DescribeThingResult res;
+                try {
+                    res = client.describeThing(req);
+                } catch (ResourceNotFoundException | InvalidRequestException e) {
+                    return null;
+                }
 
-        return principals;
+                Map<String, String> attributes = res.getAttributes();
+                return (attributes != null) ? attributes : new HashMap<String, String>();
+            }
+        });
     }
 
     public String getEndpoint() {
         DescribeEndpointRequest req = new DescribeEndpointRequest();
 
-        DescribeEndpointResult res = client.describeEndpoint(req);
+        DescribeEndpointResult res;
+        try {
+            res = client.describeEndpoint(req);
+        } catch (AmazonClientException e) {
+            List<String[]> cached = (metadataCache != null) ? metadataCache.get("endpoint") : null;
+            if (cached == null || cached.isEmpty()) {
+                throw e;
+            }
+            return cached.get(0)[0];
+        }
+
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { res.getEndpointAddress() });
+        putCachedListing("endpoint", rows);
 
         return res.getEndpointAddress();
     }
@@ -183,87 +333,181 @@ public class AwsIot {
         return new ThingNode(parent, name);
     }
 
-    public List<CertificateNode> getCertificates(Node parent) {
-        List<CertificateNode> certifcateNodes = new ArrayList<>();
-
-        String nextToken = null;
-        while (true) {
-            ListCertificatesRequest req = new ListCertificatesRequest().withPageSize(BATCH_SIZE_LIST_CERTIFICATES);
-            if (nextToken != null) {
-                req.setMarker(nextToken);
+    public List<CertificateNode> getCertificates(final Node parent) {
+        return fetch("ListCertificates", new Callable<List<CertificateNode>>() {
+            @Override
+            public List<CertificateNode> call() {
+                List<CertificateNode> certifcateNodes = new ArrayList<>();
+
+                List<String[]> cached = getCachedListing(parent, "certificates");
+                if (cached != null) {
+                    for (String[] row : cached) {
+                        certifcateNodes.add(new CertificateNode(parent, row[0], row[0], row[1], null, null,
+                                toDate(row[2]), row[3]));
+                    }
+                    return certifcateNodes;
+                }
+                List<String[]> rows = new ArrayList<>();
+
+                String nextToken = null;
+                while (true) {
+                    ListCertificatesRequest req = new ListCertificatesRequest()
+                            .withPageSize(BATCH_SIZE_LIST_CERTIFICATES);
+                    if (nextToken != null) {
+                        req.setMarker(nextToken);
+                    }
+
+                    ListCertificatesResult res = client.listCertificates(req);
+
+                    for (Certificate cert : res.getCertificates()) {
+                        CertificateNode certifcateNode = new CertificateNode(parent, cert.getCertificateId(),
+                                cert.getCertificateId(), cert.getCertificateArn(), null, null, cert.getCreationDate(),
+                                cert.getStatus());
+                        certifcateNodes.add(certifcateNode);
+                        rows.add(new String[] { cert.getCertificateId(), cert.getCertificateArn(),
+                                fromDate(cert.getCreationDate()), cert.getStatus() });
+                    }
+
+                    nextToken = res.getNextMarker();
+                    if (nextToken == null || res.getCertificates().size() < BATCH_SIZE_LIST_CERTIFICATES) {
+                        break;
+                    }
+                }
+
+                putCachedListing("certificates", rows);
+                return certifcateNodes;
             }
-
-            ListCertificatesResult res = client.listCertificates(req);
-
-            for (Certificate cert : res.getCertificates()) {
-                CertificateNode certifcateNode = new CertificateNode(parent, cert.getCertificateId(),
-                        cert.getCertificateId(), cert.getCertificateArn(), null, null, cert.getCreationDate(),
-                        cert.getStatus());
-                certifcateNodes.add(certifcateNode);
-            }
-
-            nextToken = res.getNextMarker();
-            if (nextToken == null || res.getCertificates().size() < BATCH_SIZE_LIST_CERTIFICATES) {
-                break;
-            }
-        }
-
-        return certifcateNodes;
+        });
     }
 
-    public List<PolicyNode> getPolicies(Node parent) {
-        List<PolicyNode> policyNodes = new ArrayList<>();
-
-        String nextToken = null;
-        while (true) {
-            ListPoliciesRequest req = new ListPoliciesRequest().withPageSize(BATCH_SIZE_LIST_POLICIES);
-            if (nextToken != null) {
-                req.setMarker(nextToken);
-            }
+    public CertificateNode describeCertificate(final Node parent, final String certificateId) {
+        return fetch("DescribeCertificate/" + certificateId, new Callable<CertificateNode>() {
+            @Override
+            public CertificateNode call() {
+                DescribeCertificateRequest req = new DescribeCertificateRequest().withCertificateId(certificateId);
 
-            ListPoliciesResult res = client.listPolicies(req);
-
-            for (Policy policy : res.getPolicies()) {
-                PolicyNode policyNode = new PolicyNode(parent, policy.getPolicyName(), policy.getPolicyArn());
-                policyNodes.add(policyNode);
-            }
+                DescribeCertificateResult res;
+                try {
+                    res = client.describeCertificate(req);
+                } catch (ResourceNotFoundException | InvalidRequestException e) {
+                    return null;
+                }
 
-            nextToken = res.getNextMarker();
-            if (nextToken == null || res.getPolicies().size() < BATCH_SIZE_LIST_POLICIES) {
-                break;
+                CertificateDescription cert = res.getCertificateDescription();
+                return new CertificateNode(parent, cert.getCertificateId(), cert.getCertificateId(),
+                        cert.getCertificateArn(), null, null, cert.getCreationDate(), cert.getStatus());
             }
-        }
-
-        return policyNodes;
+        });
     }
 
-    public List<TopicRuleNode> getTopicRules(Node parent) {
-        List<TopicRuleNode> topicRulesNodes = new ArrayList<>();
+    public PolicyNode describePolicy(final Node parent, final String policyName) {
+        return fetch("DescribePolicy/" + policyName, new Callable<PolicyNode>() {
+            @Override
+            public PolicyNode call() {
+                GetPolicyRequest req = new GetPolicyRequest().withPolicyName(policyName);
 
-        String nextToken = null;
-        while (true) {
-            ListTopicRulesRequest req = new ListTopicRulesRequest().withMaxResults(BATCH_SIZE_LIST_TOPIC_RULES);
-            if (nextToken != null) {
-                req.setNextToken(nextToken);
-            }
+                GetPolicyResult res;
+                try {
+                    res = client.getPolicy(req);
+                } catch (ResourceNotFoundException | InvalidRequestException e) {
+                    return null;
+                }
 
-            ListTopicRulesResult res = client.listTopicRules(req);
-
-            for (TopicRuleListItem rule : res.getRules()) {
-                TopicRuleNode ruleNode = new TopicRuleNode(parent, rule);
-                topicRulesNodes.add(ruleNode);
+                return new PolicyNode(parent, res.getPolicyName(), res.getPolicyArn());
             }
-
-            nextToken = res.getNextToken();
-            if (nextToken == null || res.getRules().size() < BATCH_SIZE_LIST_TOPIC_RULES) {
-                break;
+        });
+    }
+
+    public List<PolicyNode> getPolicies(final Node parent) {
+        return fetch("ListPolicies", new Callable<List<PolicyNode>>() {
+            @Override
+            public List<PolicyNode> call() {
+                List<PolicyNode> policyNodes = new ArrayList<>();
+
+                List<String[]> cached = getCachedListing(parent, "policies");
+                if (cached != null) {
+                    for (String[] row : cached) {
+                        policyNodes.add(new PolicyNode(parent, row[0], row[1]));
+                    }
+                    return policyNodes;
+                }
+                List<String[]> rows = new ArrayList<>();
+
+                String nextToken = null;
+                while (true) {
+                    ListPoliciesRequest req = new ListPoliciesRequest().withPageSize(BATCH_SIZE_LIST_POLICIES);
+                    if (nextToken != null) {
+                        req.setMarker(nextToken);
+                    }
+
+                    ListPoliciesResult res = client.listPolicies(req);
+
+                    for (Policy policy : res.getPolicies()) {
+                        PolicyNode policyNode = new PolicyNode(parent, policy.getPolicyName(), policy.getPolicyArn());
+                        policyNodes.add(policyNode);
+                        rows.add(new String[] { policy.getPolicyName(), policy.getPolicyArn() });
+                    }
+
+                    nextToken = res.getNextMarker();
+                    if (nextToken == null || res.getPolicies().size() < BATCH_SIZE_LIST_POLICIES) {
+                        break;
+                    }
+                }
+
+                putCachedListing("policies", rows);
+                return policyNodes;
             }
-        }
-
-        return topicRulesNodes;
+        });
+    }
+
+    public List<TopicRuleNode> getTopicRules(final Node parent) {
+        return fetch("ListTopicRules", new Callable<List<TopicRuleNode>>() {
+            @Override
+            public List<TopicRuleNode> call() {
+                List<TopicRuleNode> topicRulesNodes = new ArrayList<>();
+
+                List<String[]> cached = getCachedListing(parent, "rules");
+                if (cached != null) {
+                    for (String[] row : cached) {
+                        TopicRuleListItem rule = new TopicRuleListItem().withRuleName(row[0]).withRuleArn(row[1])
+                                .withTopicPattern(row[2]).withCreatedAt(toDate(row[3]))
+                                .withRuleDisabled(Boolean.valueOf(row[4]));
+                        topicRulesNodes.add(new TopicRuleNode(parent, rule));
+                    }
+                    return topicRulesNodes;
+                }
+                List<String[]> rows = new ArrayList<>();
+
+                String nextToken = null;
+                while (true) {
+                    ListTopicRulesRequest req = new ListTopicRulesRequest().withMaxResults(BATCH_SIZE_LIST_TOPIC_RULES);
+                    if (nextToken != null) {
+                        req.setNextToken(nextToken);
+                    }
+
+                    ListTopicRulesResult res = client.listTopicRules(req);
+
+                    for (TopicRuleListItem rule : res.getRules()) {
+                        TopicRuleNode ruleNode = new TopicRuleNode(parent, rule);
+                        topicRulesNodes.add(ruleNode);
+                        rows.add(new String[] { rule.getRuleName(), rule.getRuleArn(), rule.getTopicPattern(),
+                                fromDate(rule.getCreatedAt()),
+                                String.valueOf(Boolean.TRUE.equals(rule.getRuleDisabled())) });
+                    }
+
+                    nextToken = res.getNextToken();
+                    if (nextToken == null || res.getRules().size() < BATCH_SIZE_LIST_TOPIC_RULES) {
+                        break;
+                    }
+                }
+
+                putCachedListing("rules", rows);
+                return topicRulesNodes;
+            }
+        });
     }
 
-    public void subscribe(Node parent, String topic) {
+    public void subscribe(MessagesNode parent, String topic) {
         MessageListener listener = new MessageListener(topic, parent);
 
         try {
@@ -273,30 +517,50 @@ public class AwsIot {
         }
     }
 
-    public void publish(String topic, byte[] data) {
+    public int subscribe(AWSIotTopic topic) {
         try {
-            mqttClient.publish(topic, data);
-        } catch (AWSIotException e) {
-            // TODO: log error message;
+            mqttClient.subscribe(topic, true);
+        } catch (Exception e) {
+            return translateException(e);
         }
+        return 0;
     }
 
-    public int attachDevice(AWSIotDevice device) {
+    public int unsubscribe(String topic) {
         try {
-            mqttClient.attach(device);
+            mqttClient.unsubscribe(topic);
         } catch (Exception e) {
             return translateException(e);
         }
         return 0;
     }
 
-    public int detachDevice(AWSIotDevice device) {
+    public void publish(String topic, byte[] data) {
         try {
-            mqttClient.detach(device);
-        } catch (Exception e) {
-            return translateException(e);
+            mqttClient.publish(topic, data);
+        } catch (AWSIotException e) {
+            // TODO: log error message;
+        }
+    }
+
+    // Publishes without waiting for the request to complete. Callers only block
+    // when the maximum number of pending requests is reached. The outcome is
+    // reported to status, if not null.
+    public void publishAsync(String topic, byte[] data, PublishStatus status) {
+        PublishMessage message = new PublishMessage(topic, data, status);
+
+        publishPermits.acquireUninterruptibly();
+        if (status != null) {
+            status.begin();
+        }
+
+        // the permit and the pending count are given back by complete()
+        try {
+            mqttClient.publish(message, PUBLISH_TIMEOUT);
+        } catch (AWSIotException | RuntimeException e) {
+            LOGGER.warning("Publish: failed to publish message to " + topic + ": " + e.getMessage());
+            message.complete(-ErrorCodes.EIO());
         }
-        return 0;
     }
 
     public PolicyNode createPolicy(Node parent, String policyName, String policyDocument) {
@@ -314,25 +578,35 @@ public class AwsIot {
         return new PolicyDocumentNode(parent, res.getPolicyVersionId(), policyName, res.getPolicyVersionId());
     }
 
-    public String getPolicy(String policyName) {
-        GetPolicyRequest req = new GetPolicyRequest().withPolicyName(policyName);
+    public String getPolicy(final String policyName) {
+        return fetch("GetPolicy/" + policyName, new Callable<String>() {
+            @Override
+            public String call() {
+                GetPolicyRequest req = new GetPolicyRequest().withPolicyName(policyName);
 
-        GetPolicyResult res = client.getPolicy(req);
+                GetPolicyResult res = client.getPolicy(req);
 
-        return res.getPolicyDocument();
+                return res.getPolicyDocument();
+            }
+        });
     }
 
-    public String getPolicy(String policyName, String policyVersion) {
+    public String getPolicy(final String policyName, final String policyVersion) {
         if (policyVersion == null) {
             return getPolicy(policyName);
         }
 
-        GetPolicyVersionRequest req = new GetPolicyVersionRequest().withPolicyName(policyName).withPolicyVersionId(
-                policyVersion);
+        return fetch("GetPolicyVersion/" + policyName + "/" + policyVersion, new Callable<String>() {
+            @Override
+            public String call() {
+                GetPolicyVersionRequest req = new GetPolicyVersionRequest().withPolicyName(policyName)
+                        .withPolicyVersionId(policyVersion);
 
-        GetPolicyVersionResult res = client.getPolicyVersion(req);
+                GetPolicyVersionResult res = client.getPolicyVersion(req);
 
-        return res.getPolicyDocument();
+                return res.getPolicyDocument();
+            }
+        });
     }
 
     public List<Node> getPolicyVersions(Node parent, String policyName) {
@@ -372,18 +646,24 @@ public class AwsIot {
         } catch (Exception e) {
             return translateException(e);
         }
+        policyCertificates.removeTarget(policyName);
         return 0;
     }
 
-    public String getTopicRuleSql(String ruleName) {
-        GetTopicRuleRequest req = new GetTopicRuleRequest().withRuleName(ruleName);
+    public String getTopicRuleSql(final String ruleName) {
+        return fetch("GetTopicRule/" + ruleName, new Callable<String>() {
+            @Override
+            public String call() {
+                GetTopicRuleRequest req = new GetTopicRuleRequest().withRuleName(ruleName);
 
-        GetTopicRuleResult res = client.getTopicRule(req);
-        TopicRule rule = res.getRule();
-        if (rule != null) {
-            return rule.getSql();
-        }
-        return null;
+                GetTopicRuleResult res = client.getTopicRule(req);
+                TopicRule rule = res.getRule();
+                if (rule != null) {
+                    return rule.getSql();
+                }
+                return null;
+            }
+        });
     }
 
     public Node createCertificate(Node parent, String name) {
@@ -408,6 +688,7 @@ public class AwsIot {
         } catch (Exception e) {
             return translateException(e);
         }
+        policyCertificates.add(toCertificateId(certificateArn), policyName);
         return 0;
     }
 
@@ -420,34 +701,41 @@ public class AwsIot {
         } catch (Exception e) {
             return translateException(e);
         }
+        policyCertificates.remove(toCertificateId(certificateArn), policyName);
         return 0;
     }
 
-    public List<String> getCertificatePolicies(String certificateArn) {
-        List<String> policyNames = new ArrayList<>();
+    public List<String> getCertificatePolicies(final String certificateArn) {
+        return fetch("ListPrincipalPolicies/" + certificateArn, new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                List<String> policyNames = new ArrayList<>();
 
-        String nextToken = null;
-        while (true) {
-            ListPrincipalPoliciesRequest req = new ListPrincipalPoliciesRequest().withPrincipal(certificateArn)
-                    .withPageSize(BATCH_SIZE_LIST_PRINCIPAL_POLICIES);
+                String nextToken = null;
+                while (true) {
+                    ListPrincipalPoliciesRequest req = new ListPrincipalPoliciesRequest().withPrincipal(certificateArn)
+                            .withPageSize(BATCH_SIZE_LIST_PRINCIPAL_POLICIES);
 
-            if (nextToken != null) {
-                req.setMarker(nextToken);
-            }
+                    if (nextToken != null) {
+                        req.setMarker(nextToken);
+                    }
 
-            ListPrincipalPoliciesResult res = client.listPrincipalPolicies(req);
+                    ListPrincipalPoliciesResult res = client.listPrincipalPolicies(req);
 
-            for (Policy policy : res.getPolicies()) {
-                policyNames.add(policy.getPolicyName());
-            }
+                    for (Policy policy : res.getPolicies()) {
+                        policyNames.add(policy.getPolicyName());
+                    }
 
-            nextToken = res.getNextMarker();
-            if (nextToken == null || res.getPolicies().size() < BATCH_SIZE_LIST_PRINCIPAL_POLICIES) {
-                break;
-            }
-        }
+                    nextToken = res.getNextMarker();
+                    if (nextToken == null || res.getPolicies().size() < BATCH_SIZE_LIST_PRINCIPAL_POLICIES) {
+                        break;
+                    }
+                }
 
-        return policyNames;
+                policyCertificates.set(toCertificateId(certificateArn), policyNames);
+                return policyNames;
+            }
+        });
     }
 
     public int attachCertificate(String certificateArn, String thingName) {
@@ -459,6 +747,7 @@ public class AwsIot {
         } catch (Exception e) {
             return translateException(e);
         }
+        certificateThings.add(thingName, toCertificateId(certificateArn));
         return 0;
     }
 
@@ -471,6 +760,7 @@ public class AwsIot {
         } catch (Exception e) {
             return translateException(e);
         }
+        certificateThings.remove(thingName, toCertificateId(certificateArn));
         return 0;
     }
 
@@ -482,6 +772,8 @@ public class AwsIot {
         } catch (Exception e) {
             return translateException(e);
         }
+        certificateThings.removeTarget(certificateId);
+        policyCertificates.removeSource(certificateId);
         return 0;
     }
 
@@ -517,6 +809,7 @@ public class AwsIot {
         } catch (Exception e) {
             return translateException(e);
         }
+        certificateThings.removeSource(thingName);
         return 0;
     }
 
@@ -546,6 +839,172 @@ public class AwsIot {
         return 0;
     }
 
+    // shadow notifications are missed while the connection is down, so the
+    // cached documents are dropped when it is lost and when it comes back
+    private class MqttClient extends AWSIotMqttClient {
+
+        public MqttClient(String endpoint, String clientId, KeyStore keyStore, String keyPassword) {
+            super(endpoint, clientId, keyStore, keyPassword);
+        }
+
+        public MqttClient(String endpoint, String clientId, String accessKeyId, String secretAccessKey) {
+            super(endpoint, clientId, accessKeyId, secretAccessKey);
+        }
+
+        @Override
+        public void onConnectionSuccess() {
+            shadowCache.invalidateAll();
+            super.onConnectionSuccess();
+        }
+
+        @Override
+        public void onConnectionFailure() {
+            shadowCache.invalidateAll();
+            super.onConnectionFailure();
+        }
+
+        @Override
+        public void onConnectionClosed() {
+            shadowCache.invalidateAll();
+            super.onConnectionClosed();
+        }
+
+    }
+
+    private class PublishMessage extends AWSIotMessage {
+
+        private final PublishStatus status;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        public PublishMessage(String topic, byte[] payload, PublishStatus status) {
+            super(topic, AWSIotQos.QOS0, payload);
+
+            this.status = status;
+        }
+
+        @Override
+        public void onSuccess() {
+            complete(0);
+        }
+
+        @Override
+        public void onFailure() {
+            LOGGER.warning("Publish: failed to publish message to " + topic);
+            complete(-ErrorCodes.EIO());
+        }
+
+        @Override
+        public void onTimeout() {
+            LOGGER.warning("Publish: timed out publishing message to " + topic);
+            complete(-ErrorCodes.ETIMEDOUT());
+        }
+
+        public void complete(int r) {
+            if (completed.compareAndSet(false, true)) {
+                publishPermits.release();
+                if (status != null) {
+                    status.complete(r);
+                }
+            }
+        }
+
+    }
+
+    // A listing saved by a previous mount is only used for the first load of
+    // a directory, which is then refreshed from the service in the background.
+    private List<String[]> getCachedListing(Node parent, String key) {
+        if (metadataCache == null || parent.isInitDone()) {
+            return null;
+        }
+
+        List<String[]> rows = metadataCache.get(key);
+        if (rows != null) {
+            parent.setLoadedFromCache();
+        }
+        return rows;
+    }
+
+    private void putCachedListing(String key, List<String[]> rows) {
+        if (metadataCache != null) {
+            metadataCache.put(key, rows);
+        }
+    }
+
+    public void saveMetadataCache() {
+        if (metadataCache != null) {
+            metadataCache.save();
+        }
+    }
+
+    // the certificate id is the last part of its ARN
+    private static String toCertificateId(String certificateArn) {
+        return certificateArn.substring(certificateArn.lastIndexOf('/') + 1);
+    }
+
+    private static List<String> toCertificateIds(List<String> principals) {
+        List<String> ids = new ArrayList<>();
+        for (String principal : principals) {
+            ids.add(toCertificateId(principal));
+        }
+        return ids;
+    }
+
+    // attribute names and values can't contain '=' or line breaks
+    private static String encodeAttributes(Map<String, String> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append('\n');
+            }
+            builder.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return builder.toString();
+    }
+
+    private static Map<String, String> decodeAttributes(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        Map<String, String> attributes = new HashMap<>();
+        for (String line : value.split("\n")) {
+            int pos = line.indexOf('=');
+            if (pos > 0) {
+                attributes.put(line.substring(0, pos), line.substring(pos + 1));
+            }
+        }
+        return attributes;
+    }
+
+    private static String fromDate(Date date) {
+        return (date != null) ? String.valueOf(date.getTime()) : null;
+    }
+
+    private static Date toDate(String value) {
+        return (value != null) ? new Date(Long.parseLong(value)) : null;
+    }
+
+    // concurrent identical requests share a single call to the service
+    @SuppressWarnings("unchecked")
+    private <T> T fetch(String key, final Callable<T> callable) {
+        try {
+            return (T) fetches.execute(key, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return callable.call();
+                }
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private int translateException(Exception e) {
         if (e instanceof ResourceNotFoundException) {
             return -ErrorCodes.ENODEV();
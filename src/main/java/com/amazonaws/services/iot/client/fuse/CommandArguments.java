@@ -96,6 +96,19 @@ public class CommandArguments {
 		return value;
 	}
 
+	public long getLong(String name, long defaultValue) {
+		String value = get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new RuntimeException("Invalid numeric argument for " + name + ": " + value);
+		}
+	}
+
 	public String getNotNull(String name) {
 		String value = get(name);
 		if (value == null) {
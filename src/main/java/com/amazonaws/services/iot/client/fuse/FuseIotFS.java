@@ -22,10 +22,12 @@ import java.util.Set;
 
 import com.amazonaws.services.iot.client.fuse.node.EndpointNode;
 import com.amazonaws.services.iot.client.fuse.node.Node;
+import com.amazonaws.services.iot.client.fuse.node.RootNode;
 import com.amazonaws.services.iot.client.fuse.node.certificates.CertificatesNode;
 import com.amazonaws.services.iot.client.fuse.node.policies.PoliciesNode;
 import com.amazonaws.services.iot.client.fuse.node.rules.TopicRulesNode;
 import com.amazonaws.services.iot.client.fuse.node.things.ThingsNode;
+import com.amazonaws.services.iot.client.fuse.node.topics.PayloadArena;
 import com.amazonaws.services.iot.client.fuse.node.topics.TopicsNode;
 
 import net.fusejna.DirectoryFiller;
@@ -43,14 +45,25 @@ import net.fusejna.types.TypeMode.ModeWrapper;
 
 public class FuseIotFS extends FuseFilesystem {
 
+    // entry and attribute timeout of a read-only mount, in seconds
+    private static final int READ_ONLY_TIMEOUT = 60;
+
     private final Node root;
+    private final AwsIot iotClient;
+    private final MountOptions options;
 
     public FuseIotFS(String region, String accessKeyId, String secretAccessKey, KeyStore keyStore, String keyPassword,
             Set<String> topics) {
+        this(region, accessKeyId, secretAccessKey, keyStore, keyPassword, topics, new MountOptions());
+    }
+
+    public FuseIotFS(String region, String accessKeyId, String secretAccessKey, KeyStore keyStore, String keyPassword,
+            Set<String> topics, MountOptions options) {
         log(true);
 
-        root = new Node();
-        AwsIot iotClient = new AwsIot(root, region, accessKeyId, secretAccessKey, keyStore, keyPassword);
+        this.options = options;
+        root = new RootNode();
+        iotClient = new AwsIot(root, region, accessKeyId, secretAccessKey, keyStore, keyPassword, options);
 
         root.setIotClient(iotClient);
         root.addChildren(new EndpointNode(root));
@@ -58,7 +71,8 @@ public class FuseIotFS extends FuseFilesystem {
         root.addChildren(new PoliciesNode(root));
         root.addChildren(new CertificatesNode(root));
         root.addChildren(new TopicRulesNode(root));
-        root.addChildren(new TopicsNode(root, topics));
+        PayloadArena arena = options.isDirectMessageStorage() ? new PayloadArena() : null;
+        root.addChildren(new TopicsNode(root, topics, options.getMessageRetention(), arena));
     }
 
     public FuseIotFS(String region, String accessKeyId, String secretAccessKey, Set<String> topics) {
@@ -72,8 +86,7 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     public void afterUnmount(File mountPoint) {
-        // TODO Auto-generated method stub
-
+        iotClient.saveMetadataCache();
     }
 
     @Override
@@ -102,6 +115,10 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     public int create(String path, ModeWrapper mode, FileInfoWrapper info) {
+        if (options.isReadOnly()) {
+            return -ErrorCodes.EROFS();
+        }
+
         Node node = root.find(path);
         if (node != null) {
             return -ErrorCodes.EEXIST();
@@ -125,7 +142,11 @@ public class FuseIotFS extends FuseFilesystem {
             return -ErrorCodes.ENOENT();
         }
 
-        return node.create(name, mode, info);
+        int r = node.create(name, mode, info);
+        if (r == 0) {
+            info.direct_io(true);
+        }
+        return r;
     }
 
     @Override
@@ -141,14 +162,22 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     public int flush(String path, FileInfoWrapper info) {
-        // TODO Auto-generated method stub
-        return 0;
+        Node node = root.find(path);
+        if (node == null) {
+            return -ErrorCodes.ENOENT();
+        }
+
+        return node.flush(path, info);
     }
 
     @Override
     public int fsync(String path, int datasync, FileInfoWrapper info) {
-        // TODO Auto-generated method stub
-        return 0;
+        Node node = root.find(path);
+        if (node == null) {
+            return -ErrorCodes.ENOENT();
+        }
+
+        return node.fsync(path, info);
     }
 
     @Override
@@ -159,7 +188,16 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     public int ftruncate(String path, long offset, FileInfoWrapper info) {
-        return truncate(path, offset);
+        if (options.isReadOnly()) {
+            return -ErrorCodes.EROFS();
+        }
+
+        Node node = root.find(path);
+        if (node == null) {
+            return -ErrorCodes.ENOENT();
+        }
+
+        return node.ftruncate(path, offset, info);
     }
 
     @Override
@@ -169,8 +207,9 @@ public class FuseIotFS extends FuseFilesystem {
             return -ErrorCodes.ENOENT();
         }
 
-        if (!node.isInitDone()) {
-            node.init();
+        // the attributes of a directory don't depend on its listing
+        if (!node.isDir()) {
+            node.ensureInit();
         }
 
         return node.getAttr(stat);
@@ -184,7 +223,13 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     protected String[] getOptions() {
-        return new String[] { "-o", "direct_io,nosuid,nodev,noexec" };
+        // direct I/O is chosen per file on open. Misses are also remembered
+        // by the kernel, for the same time.
+        String mountOptions = "nosuid,nodev,noexec,negative_timeout=" + (options.getNegativeTimeout() / 1000.0);
+        if (options.isReadOnly()) {
+            mountOptions += ",ro,entry_timeout=" + READ_ONLY_TIMEOUT + ",attr_timeout=" + READ_ONLY_TIMEOUT;
+        }
+        return new String[] { "-o", mountOptions };
     }
 
     @Override
@@ -198,6 +243,10 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     public int link(String path, String target) {
+        if (options.isReadOnly()) {
+            return -ErrorCodes.EROFS();
+        }
+
         Node targetNode = root.find(target);
         if (targetNode == null) {
             return -ErrorCodes.ENOENT();
@@ -241,6 +290,10 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     public int mkdir(String path, ModeWrapper mode) {
+        if (options.isReadOnly()) {
+            return -ErrorCodes.EROFS();
+        }
+
         Node node = root.find(path);
         if (node != null) {
             return -ErrorCodes.EEXIST();
@@ -280,10 +333,21 @@ public class FuseIotFS extends FuseFilesystem {
             return -ErrorCodes.ENOENT();
         }
 
-        if (!node.isInitDone()) {
-            node.init();
+        node.ensureInit();
+        int r = node.open(path, info);
+        if (r == 0) {
+            setCachePolicy(node, info);
+        }
+        return r;
+    }
+
+    private static void setCachePolicy(Node node, FileInfoWrapper info) {
+        if (node.isCacheable()) {
+            info.keep_cache(true);
+        } else {
+            // the size reported by getattr can't be relied on
+            info.direct_io(true);
         }
-        return node.open(path, info);
     }
 
     @Override
@@ -313,9 +377,7 @@ public class FuseIotFS extends FuseFilesystem {
             return -ErrorCodes.ENOTDIR();
         }
 
-        if (!node.isInitDone()) {
-            node.init();
-        }
+        node.ensureInit();
         return node.readdir(filler);
     }
 
@@ -326,9 +388,7 @@ public class FuseIotFS extends FuseFilesystem {
             return -ErrorCodes.ENOENT();
         }
 
-        if (!node.isInitDone()) {
-            node.init();
-        }
+        node.ensureInit();
 
         return node.readlink(buffer, size);
     }
@@ -362,6 +422,10 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     public int rmdir(String path) {
+        if (options.isReadOnly()) {
+            return -ErrorCodes.EROFS();
+        }
+
         Node node = root.find(path, false);
         if (node == null) {
             return -ErrorCodes.ENOENT();
@@ -383,6 +447,10 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     public int symlink(String path, String target) {
+        if (options.isReadOnly()) {
+            return -ErrorCodes.EROFS();
+        }
+
         Node node = root.find(target);
         if (node != null) {
             return -ErrorCodes.EEXIST();
@@ -411,6 +479,10 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     public int truncate(String path, long offset) {
+        if (options.isReadOnly()) {
+            return -ErrorCodes.EROFS();
+        }
+
         Node node = root.find(path);
         if (node == null) {
             return -ErrorCodes.ENOENT();
@@ -421,6 +493,10 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     public int unlink(String path) {
+        if (options.isReadOnly()) {
+            return -ErrorCodes.EROFS();
+        }
+
         Node node = root.find(path, false);
         if (node == null) {
             return -ErrorCodes.ENOENT();
@@ -436,6 +512,10 @@ public class FuseIotFS extends FuseFilesystem {
 
     @Override
     public int write(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
+        if (options.isReadOnly()) {
+            return -ErrorCodes.EROFS();
+        }
+
         Node node = root.find(path);
         if (node == null) {
             return -ErrorCodes.ENOENT();
@@ -15,18 +15,15 @@
 
 package com.amazonaws.services.iot.client.fuse;
 
-import java.util.UUID;
-
 import com.amazonaws.services.iot.client.AWSIotMessage;
 import com.amazonaws.services.iot.client.AWSIotTopic;
-import com.amazonaws.services.iot.client.fuse.node.Node;
-import com.amazonaws.services.iot.client.fuse.node.topics.MessageNode;
+import com.amazonaws.services.iot.client.fuse.node.topics.MessagesNode;
 
 public class MessageListener extends AWSIotTopic {
 
-	private final Node messagesNode;
+	private final MessagesNode messagesNode;
 	
-	public MessageListener(String topic, Node node) {
+	public MessageListener(String topic, MessagesNode node) {
 		super(topic);
 		
 		this.messagesNode = node;
@@ -34,10 +31,7 @@ public class MessageListener extends AWSIotTopic {
 
     @Override
     public void onMessage(AWSIotMessage message) {
-    	String messageId = UUID.randomUUID().toString();
-    	
-    	MessageNode node = new MessageNode(messagesNode, messageId, message.getPayload());
-    	messagesNode.addChildren(node);
+    	messagesNode.addMessage(message.getPayload());
     }
 
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+// Registry listings saved to a local file, so a new mount can serve them
+// right away while they are refreshed from the service. Each listing is kept
+// as rows of string fields under a key such as "things". The file is streamed
+// to a temporary file and renamed. On load it is read through a memory
+// mapping, but the rows are decoded into heap objects, so the mapping only
+// saves the copy through a read buffer.
+public class MetadataCache {
+
+    private static final Logger LOGGER = Logger.getLogger(MetadataCache.class.getName());
+
+    private static final int MAGIC = 0x494f5446;
+    private static final int FORMAT_VERSION = 1;
+    private static final long SAVE_DELAY = 5000;
+
+    private static final ScheduledExecutorService scheduler = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "metadata-cache");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final File file;
+    private final Map<String, List<String[]>> listings = new ConcurrentHashMap<>();
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+
+    public MetadataCache(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public List<String[]> get(String key) {
+        return listings.get(key);
+    }
+
+    // replaces a listing, the file is saved shortly after
+    public void put(String key, List<String[]> rows) {
+        listings.put(key, rows);
+
+        if (saveScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    saveScheduled.set(false);
+                    save();
+                }
+            }, SAVE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void load() {
+        if (!file.isFile()) {
+            return;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                LOGGER.warning("Cache: ignoring file with unknown format " + file);
+                return;
+            }
+
+            int count = buffer.getInt();
+            // each listing takes at least 12 bytes and each field 4, so the
+            // counts of a corrupt file are caught before anything is allocated
+            checkCount(count, 12, buffer);
+            for (int i = 0; i < count; i++) {
+                String key = getString(buffer);
+                int rowCount = buffer.getInt();
+                int fieldCount = buffer.getInt();
+                if (fieldCount < 0 || (fieldCount == 0 && rowCount != 0)) {
+                    throw new IllegalArgumentException("invalid field count " + fieldCount);
+                }
+                checkCount(rowCount, 4L * fieldCount, buffer);
+                List<String[]> rows = new ArrayList<>(Math.min(rowCount, 1024));
+                for (int r = 0; r < rowCount; r++) {
+                    String[] row = new String[fieldCount];
+                    for (int f = 0; f < fieldCount; f++) {
+                        row[f] = getString(buffer);
+                    }
+                    rows.add(row);
+                }
+                listings.put(key, rows);
+            }
+        } catch (IOException | RuntimeException e) {
+            // a damaged file is dropped, the listings are fetched again
+            LOGGER.warning("Cache: failed to load " + file + ": " + e);
+            listings.clear();
+            if (!(e instanceof IOException) && !file.delete()) {
+                LOGGER.warning("Cache: failed to delete " + file);
+            }
+        }
+    }
+
+    private static void checkCount(int count, long minSize, MappedByteBuffer buffer) {
+        if (count < 0 || count * minSize > buffer.remaining()) {
+            throw new IllegalArgumentException("invalid count " + count);
+        }
+    }
+
+    public synchronized void save() {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmpFile);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            List<Map.Entry<String, List<String[]>>> entries = new ArrayList<>(listings.entrySet());
+            out.writeInt(entries.size());
+            for (Map.Entry<String, List<String[]>> entry : entries) {
+                List<String[]> rows = entry.getValue();
+                int fieldCount = rows.isEmpty() ? 0 : rows.get(0).length;
+
+                putString(out, entry.getKey());
+                out.writeInt(rows.size());
+                out.writeInt(fieldCount);
+                for (String[] row : rows) {
+                    for (int f = 0; f < fieldCount; f++) {
+                        putString(out, row[f]);
+                    }
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            LOGGER.warning("Cache: failed to write " + tmpFile + ": " + e);
+            return;
+        }
+
+        try {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warning("Cache: failed to replace " + file + ": " + e);
+        }
+    }
+
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static String getString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("truncated file");
+        }
+        byte[] data = new byte[length];
+        buffer.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+}
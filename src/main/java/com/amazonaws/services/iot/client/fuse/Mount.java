@@ -35,6 +35,8 @@ import java.util.Set;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.services.iot.client.fuse.CommandArguments;
+import com.amazonaws.services.iot.client.fuse.node.RefreshScheduler;
+import com.amazonaws.services.iot.client.fuse.node.topics.MessageRetention;
 
 import net.fusejna.FuseException;
 
@@ -68,12 +70,50 @@ public class Mount {
             usageAndExit();
         }
 
+        MountOptions options = new MountOptions();
+        try {
+            int maxMessages = (int) commandArgs.getLong("max-messages", MessageRetention.DEFAULT_MAX_COUNT);
+            long maxMessageBytes = commandArgs.getLong("max-message-bytes", MessageRetention.DEFAULT_MAX_BYTES);
+            long maxMessageAge = commandArgs.getLong("max-message-age", MessageRetention.DEFAULT_MAX_AGE / 1000);
+            options.setMessageRetention(new MessageRetention(maxMessages, maxMessageBytes, maxMessageAge * 1000));
+
+            String messageStorage = commandArgs.get("message-storage", "heap");
+            if (!messageStorage.equals("heap") && !messageStorage.equals("direct")) {
+                throw new RuntimeException("Invalid message storage: " + messageStorage);
+            }
+            options.setDirectMessageStorage(messageStorage.equals("direct"));
+
+            options.setMaxPendingPublishes((int) commandArgs.getLong("max-pending-publishes",
+                    MountOptions.DEFAULT_MAX_PENDING_PUBLISHES));
+            options.setMaxConcurrentRefreshes((int) commandArgs.getLong("max-concurrent-refreshes",
+                    RefreshScheduler.DEFAULT_MAX_CONCURRENT_REFRESHES));
+
+            long minRefreshInterval = commandArgs.getLong("min-refresh-interval",
+                    RefreshScheduler.DEFAULT_MIN_INTERVAL / 1000);
+            long maxRefreshInterval = commandArgs.getLong("max-refresh-interval",
+                    RefreshScheduler.DEFAULT_MAX_INTERVAL / 1000);
+            options.setRefreshIntervals(minRefreshInterval * 1000, maxRefreshInterval * 1000);
+
+            options.setNegativeTimeout(commandArgs.getLong("negative-timeout",
+                    MountOptions.DEFAULT_NEGATIVE_TIMEOUT / 1000) * 1000);
+
+            options.setReadOnly(commandArgs.getAll("read-only") != null);
+
+            String cacheFile = commandArgs.get("cache-file");
+            if (cacheFile != null) {
+                options.setCacheFile(new File(cacheFile));
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            usageAndExit();
+        }
+
         FuseIotFS fs;
         if (certificateFile != null && privateKeyFile != null) {
             KeyStorePasswordPair pair = getKeyStorePasswordPair(certificateFile, privateKeyFile);
-            fs = new FuseIotFS(region, accessKeyId, secretAccessKey, pair.keyStore, pair.keyPassword, topics);
+            fs = new FuseIotFS(region, accessKeyId, secretAccessKey, pair.keyStore, pair.keyPassword, topics, options);
         } else {
-            fs = new FuseIotFS(region, accessKeyId, secretAccessKey, topics);
+            fs = new FuseIotFS(region, accessKeyId, secretAccessKey, null, null, topics, options);
         }
 
         fs.mount(mountPoint);
@@ -81,7 +121,7 @@ public class Mount {
 
     private static void usageAndExit() {
         System.err
-                .println("Usage: mount-iot-fuse [-help] -dest <mount-point> -region <aws-region> [-access-key-id <access-key-id>] [-secret-access-key <secret-access-key>] [-certificate <certificate-file>] [-private-key <private-key-file>] [-topic <topic>]...");
+                .println("Usage: mount-iot-fuse [-help] -dest <mount-point> -region <aws-region> [-access-key-id <access-key-id>] [-secret-access-key <secret-access-key>] [-certificate <certificate-file>] [-private-key <private-key-file>] [-topic <topic>]... [-max-messages <count>] [-max-message-bytes <bytes>] [-max-message-age <seconds>] [-message-storage heap|direct] [-max-pending-publishes <count>] [-max-concurrent-refreshes <count>] [-min-refresh-interval <seconds>] [-max-refresh-interval <seconds>] [-cache-file <file>] [-negative-timeout <seconds>] [-read-only]");
         System.exit(1);
     }
 
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse;
+
+import java.io.File;
+
+import com.amazonaws.services.iot.client.fuse.node.RefreshScheduler;
+import com.amazonaws.services.iot.client.fuse.node.topics.MessageRetention;
+
+public class MountOptions {
+
+    public static final int DEFAULT_MAX_PENDING_PUBLISHES = 1024;
+    public static final long DEFAULT_NEGATIVE_TIMEOUT = 2000;
+
+    private MessageRetention messageRetention = new MessageRetention();
+    private boolean directMessageStorage;
+    private int maxPendingPublishes = DEFAULT_MAX_PENDING_PUBLISHES;
+    private int maxConcurrentRefreshes = RefreshScheduler.DEFAULT_MAX_CONCURRENT_REFRESHES;
+    private long minRefreshInterval = RefreshScheduler.DEFAULT_MIN_INTERVAL;
+    private long maxRefreshInterval = RefreshScheduler.DEFAULT_MAX_INTERVAL;
+    private File cacheFile;
+    private long negativeTimeout = DEFAULT_NEGATIVE_TIMEOUT;
+    private boolean readOnly;
+
+    public MessageRetention getMessageRetention() {
+        return messageRetention;
+    }
+
+    public void setMessageRetention(MessageRetention messageRetention) {
+        this.messageRetention = messageRetention;
+    }
+
+    public boolean isDirectMessageStorage() {
+        return directMessageStorage;
+    }
+
+    public void setDirectMessageStorage(boolean directMessageStorage) {
+        this.directMessageStorage = directMessageStorage;
+    }
+
+    public int getMaxPendingPublishes() {
+        return maxPendingPublishes;
+    }
+
+    public void setMaxPendingPublishes(int maxPendingPublishes) {
+        if (maxPendingPublishes <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of pending publishes: " + maxPendingPublishes);
+        }
+        this.maxPendingPublishes = maxPendingPublishes;
+    }
+
+    public int getMaxConcurrentRefreshes() {
+        return maxConcurrentRefreshes;
+    }
+
+    public void setMaxConcurrentRefreshes(int maxConcurrentRefreshes) {
+        if (maxConcurrentRefreshes <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of concurrent refreshes: "
+                    + maxConcurrentRefreshes);
+        }
+        this.maxConcurrentRefreshes = maxConcurrentRefreshes;
+    }
+
+    public long getMinRefreshInterval() {
+        return minRefreshInterval;
+    }
+
+    public long getMaxRefreshInterval() {
+        return maxRefreshInterval;
+    }
+
+    public void setRefreshIntervals(long minRefreshInterval, long maxRefreshInterval) {
+        if (minRefreshInterval <= 0 || maxRefreshInterval < minRefreshInterval) {
+            throw new IllegalArgumentException("Invalid refresh intervals: " + minRefreshInterval + ", "
+                    + maxRefreshInterval);
+        }
+        this.minRefreshInterval = minRefreshInterval;
+        this.maxRefreshInterval = maxRefreshInterval;
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    public void setCacheFile(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    public long getNegativeTimeout() {
+        return negativeTimeout;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    // how long a name found missing is remembered, 0 to not remember
+    public void setNegativeTimeout(long negativeTimeout) {
+        if (negativeTimeout < 0) {
+            throw new IllegalArgumentException("Invalid negative timeout: " + negativeTimeout);
+        }
+        this.negativeTimeout = negativeTimeout;
+    }
+
+}
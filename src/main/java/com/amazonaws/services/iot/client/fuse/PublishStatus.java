@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse;
+
+// Tracks the asynchronous publish requests issued through one file handle, so
+// that failures can be reported back on a later flush or fsync.
+public class PublishStatus {
+
+    private int pending;
+    private int error;
+
+    synchronized void begin() {
+        pending++;
+    }
+
+    synchronized void complete(int r) {
+        pending--;
+        if (r != 0 && error == 0) {
+            error = r;
+        }
+        notifyAll();
+    }
+
+    // returns and clears the first error reported since the last call
+    public synchronized int takeError() {
+        int r = error;
+        error = 0;
+        return r;
+    }
+
+    public synchronized int awaitCompletion() throws InterruptedException {
+        while (pending > 0) {
+            wait();
+        }
+        return takeError();
+    }
+
+}
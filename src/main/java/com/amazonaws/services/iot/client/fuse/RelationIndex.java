@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Reverse index of a one-to-many relation, such as thing to certificates,
+// built from the forward listings as they are fetched and kept up to date on
+// attach and detach. It only knows about the sources listed so far. Each
+// target has its own version, so a change only affects the targets whose
+// sources changed.
+public class RelationIndex {
+
+    // source to targets, as last listed
+    private final Map<String, Set<String>> forward = new HashMap<>();
+    private final ConcurrentMap<String, Set<String>> reverse = new ConcurrentHashMap<>();
+    // target to the sequence number of its last change, kept after the last
+    // source is removed so the version never goes back
+    private final ConcurrentMap<String, Integer> versions = new ConcurrentHashMap<>();
+    private int sequence;
+
+    public synchronized void set(String source, Collection<String> targets) {
+        Set<String> previous = forward.remove(source);
+        if (previous != null) {
+            for (String target : previous) {
+                if (!targets.contains(target)) {
+                    removeReverse(source, target);
+                }
+            }
+        }
+
+        if (!targets.isEmpty()) {
+            Set<String> current = new HashSet<>(targets);
+            forward.put(source, current);
+            for (String target : current) {
+                if (previous == null || !previous.contains(target)) {
+                    addReverse(source, target);
+                }
+            }
+        }
+    }
+
+    public synchronized void add(String source, String target) {
+        Set<String> targets = forward.get(source);
+        if (targets == null) {
+            targets = new HashSet<>();
+            forward.put(source, targets);
+        }
+        if (targets.add(target)) {
+            addReverse(source, target);
+        }
+    }
+
+    public synchronized void remove(String source, String target) {
+        Set<String> targets = forward.get(source);
+        if (targets != null && targets.remove(target)) {
+            if (targets.isEmpty()) {
+                forward.remove(source);
+            }
+            removeReverse(source, target);
+        }
+    }
+
+    public synchronized void removeSource(String source) {
+        set(source, Collections.<String> emptySet());
+    }
+
+    public synchronized void removeTarget(String target) {
+        Set<String> sources = reverse.remove(target);
+        if (sources == null) {
+            return;
+        }
+        for (String source : sources) {
+            Set<String> targets = forward.get(source);
+            if (targets != null && targets.remove(target) && targets.isEmpty()) {
+                forward.remove(source);
+            }
+        }
+        versions.put(target, ++sequence);
+    }
+
+    public Set<String> getSources(String target) {
+        Set<String> sources = reverse.get(target);
+        return (sources != null) ? Collections.unmodifiableSet(sources) : Collections.<String> emptySet();
+    }
+
+    // changes whenever the sources of the target change
+    public int getVersion(String target) {
+        Integer version = versions.get(target);
+        return (version != null) ? version : 0;
+    }
+
+    private void addReverse(String source, String target) {
+        Set<String> sources = reverse.get(target);
+        if (sources == null) {
+            sources = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            reverse.put(target, sources);
+        }
+        sources.add(source);
+        versions.put(target, ++sequence);
+    }
+
+    private void removeReverse(String source, String target) {
+        Set<String> sources = reverse.get(target);
+        if (sources != null) {
+            sources.remove(source);
+            if (sources.isEmpty()) {
+                reverse.remove(target);
+            }
+            versions.put(target, ++sequence);
+        }
+    }
+
+}
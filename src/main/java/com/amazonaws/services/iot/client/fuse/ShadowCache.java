@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+// Local copies of the shadow documents of recently accessed things. The copies
+// follow the update and delete notifications received by the shadow
+// multiplexer. Notifications can be missed while the connection is down, so
+// copies are forgotten when it is lost or resumed, and are not used once they
+// are older than the maximum age. The least recently used things are dropped
+// when the cache is full.
+public class ShadowCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ShadowCache.class.getName());
+
+    public static final int DEFAULT_MAX_THINGS = 10000;
+    public static final long DEFAULT_MAX_AGE = 60 * 1000;
+
+    private final int maxThings;
+    private final long maxAge;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Entry> entries;
+
+    public ShadowCache() {
+        this(DEFAULT_MAX_THINGS, DEFAULT_MAX_AGE);
+    }
+
+    public ShadowCache(int maxThings, long maxAge) {
+        this.maxThings = maxThings;
+        this.maxAge = maxAge;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // returns the cached document, or null if the thing is not tracked or
+    // its document is not known or too old
+    public synchronized String get(String thingName) {
+        Entry entry = entries.get(thingName);
+        if (entry == null || entry.document == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.updateTime > maxAge) {
+            return null;
+        }
+        return entry.document;
+    }
+
+    synchronized boolean isTracked(String thingName) {
+        return entries.containsKey(thingName);
+    }
+
+    // starts following the shadow of the thing. This should be called before
+    // the document is retrieved, so no update is missed in between.
+    public synchronized void track(String thingName) {
+        if (entries.containsKey(thingName)) {
+            return;
+        }
+
+        entries.put(thingName, new Entry());
+
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxThings && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    // stores a document retrieved from the service, unless a newer version
+    // has been received in the meantime
+    public void update(String thingName, String document) {
+        update(thingName, document, getVersion(document));
+    }
+
+    // forgets the document, the next read will retrieve it from the service
+    public synchronized void invalidate(String thingName) {
+        Entry entry = entries.get(thingName);
+        if (entry != null) {
+            entry.document = null;
+            entry.version = -1;
+        }
+    }
+
+    // forgets all documents, called when notifications may have been missed
+    public synchronized void invalidateAll() {
+        for (Entry entry : entries.values()) {
+            entry.document = null;
+            entry.version = -1;
+        }
+    }
+
+    private synchronized void update(String thingName, String document, long version) {
+        Entry entry = entries.get(thingName);
+        if (entry == null) {
+            return;
+        }
+
+        if (entry.document == null || version > entry.version) {
+            entry.document = document;
+            entry.version = version;
+            entry.updateTime = System.currentTimeMillis();
+        } else if (version == entry.version) {
+            // still current
+            entry.updateTime = System.currentTimeMillis();
+        }
+    }
+
+    private long getVersion(String document) {
+        if (document == null || document.isEmpty()) {
+            return -1;
+        }
+
+        try {
+            return mapper.readTree(document).path("version").asLong(-1);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    void onDocuments(String thingName, byte[] payload) {
+        if (!isTracked(thingName)) {
+            return;
+        }
+
+        try {
+            JsonNode documents = mapper.readTree(payload);
+            JsonNode current = documents.get("current");
+            if (current == null || !current.isObject()) {
+                return;
+            }
+
+            // same layout as the document returned by a shadow get
+            ObjectNode document = (ObjectNode) current;
+            if (documents.has("timestamp")) {
+                document.set("timestamp", documents.get("timestamp"));
+            }
+            update(thingName, mapper.writeValueAsString(document), document.path("version").asLong(-1));
+        } catch (IOException e) {
+            LOGGER.warning("Shadow: invalid update document for " + thingName);
+        }
+    }
+
+    void onDelete(String thingName, byte[] payload) {
+        if (!isTracked(thingName)) {
+            return;
+        }
+
+        long version = -1;
+        try {
+            version = mapper.readTree(payload).path("version").asLong(-1);
+        } catch (IOException e) {
+        }
+
+        synchronized (this) {
+            Entry entry = entries.get(thingName);
+            if (entry != null && (entry.document == null || version >= entry.version)) {
+                entry.document = "";
+                entry.version = version;
+                entry.updateTime = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private String document;
+        private long version = -1;
+        private long updateTime;
+
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.amazonaws.services.iot.client.AWSIotDeviceErrorCode;
+import com.amazonaws.services.iot.client.AWSIotException;
+import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotTimeoutException;
+import com.amazonaws.services.iot.client.AWSIotTopic;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+// Shadow requests for all things over a single wildcard subscription to the
+// shadow topics. Each request carries a client token, which the service
+// returns in the accepted or rejected response, so responses are matched to
+// their requests. Update and delete notifications received on the same
+// subscription keep the shadow cache current.
+public class ShadowMultiplexer {
+
+    private static final Logger LOGGER = Logger.getLogger(ShadowMultiplexer.class.getName());
+
+    private static final String TOPIC_PREFIX = "$aws/things/";
+    private static final String SHADOW_TOPIC = "/shadow/";
+    private static final String ACCEPTED = "/accepted";
+    private static final String REJECTED = "/rejected";
+
+    private final AwsIot iotClient;
+    private final ShadowCache cache;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ConcurrentMap<String, Request> requests = new ConcurrentHashMap<>();
+    private final SingleFlight<String, String> gets = new SingleFlight<>();
+    private boolean subscribed;
+
+    public ShadowMultiplexer(AwsIot iotClient, ShadowCache cache) {
+        this.iotClient = iotClient;
+        this.cache = cache;
+    }
+
+    // returns the shadow document, or null if the thing has no shadow.
+    // Concurrent gets of the same shadow share a single request.
+    public String get(final String thingName, final long timeout) throws AWSIotException, AWSIotTimeoutException {
+        try {
+            return gets.execute(thingName, new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return request(thingName, timeout);
+                }
+            });
+        } catch (AWSIotException | AWSIotTimeoutException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AWSIotException(e);
+        }
+    }
+
+    private String request(String thingName, long timeout) throws AWSIotException, AWSIotTimeoutException {
+        Request request = send(thingName, "get", mapper.createObjectNode(), timeout);
+        if (request.code == AWSIotDeviceErrorCode.NOT_FOUND.getValue()) {
+            return null;
+        }
+        checkResponse(request);
+
+        // drop the token so the document reads the same as the one in the cache
+        try {
+            JsonNode document = mapper.readTree(request.response);
+            if (document.isObject()) {
+                ((ObjectNode) document).remove("clientToken");
+            }
+            return mapper.writeValueAsString(document);
+        } catch (IOException e) {
+            throw new AWSIotException(e);
+        }
+    }
+
+    public void update(String thingName, String document, long timeout) throws AWSIotException,
+            AWSIotTimeoutException {
+        JsonNode json;
+        try {
+            json = mapper.readTree(document);
+        } catch (IOException e) {
+            throw new AWSIotException(AWSIotDeviceErrorCode.BAD_REQUEST, "Invalid shadow document");
+        }
+        if (json == null || !json.isObject()) {
+            throw new AWSIotException(AWSIotDeviceErrorCode.BAD_REQUEST, "Invalid shadow document");
+        }
+
+        checkResponse(send(thingName, "update", (ObjectNode) json, timeout));
+    }
+
+    private Request send(String thingName, String operation, ObjectNode payload, long timeout)
+            throws AWSIotException, AWSIotTimeoutException {
+        subscribe();
+
+        String clientToken = UUID.randomUUID().toString();
+        payload.put("clientToken", clientToken);
+
+        Request request = new Request();
+        requests.put(clientToken, request);
+        try {
+            byte[] data = mapper.writeValueAsBytes(payload);
+            iotClient.publishAsync(TOPIC_PREFIX + thingName + SHADOW_TOPIC + operation, data, null);
+
+            if (!request.done.await(timeout, TimeUnit.MILLISECONDS)) {
+                throw new AWSIotTimeoutException("Shadow " + operation + " request timed out");
+            }
+            return request;
+        } catch (IOException e) {
+            throw new AWSIotException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AWSIotException(e);
+        } finally {
+            requests.remove(clientToken);
+        }
+    }
+
+    private void checkResponse(Request request) throws AWSIotException {
+        if (request.code != 0) {
+            AWSIotDeviceErrorCode errorCode = AWSIotDeviceErrorCode.valueOf(request.code);
+            throw new AWSIotException(errorCode, request.response);
+        }
+    }
+
+    private synchronized void subscribe() throws AWSIotException {
+        if (subscribed) {
+            return;
+        }
+
+        if (iotClient.subscribe(new ShadowTopic()) != 0) {
+            throw new AWSIotException("Failed to subscribe to shadow topics");
+        }
+        subscribed = true;
+    }
+
+    private void onMessage(String topic, byte[] payload) {
+        if (!topic.startsWith(TOPIC_PREFIX)) {
+            return;
+        }
+        int pos = topic.indexOf(SHADOW_TOPIC, TOPIC_PREFIX.length());
+        if (pos < 0) {
+            return;
+        }
+        String thingName = topic.substring(TOPIC_PREFIX.length(), pos);
+        String operation = topic.substring(pos + SHADOW_TOPIC.length());
+
+        if (operation.equals("update/documents")) {
+            cache.onDocuments(thingName, payload);
+            return;
+        }
+        if (operation.equals("delete/accepted")) {
+            cache.onDelete(thingName, payload);
+        }
+
+        boolean accepted = operation.endsWith(ACCEPTED);
+        if (!accepted && !operation.endsWith(REJECTED)) {
+            return;
+        }
+        if (requests.isEmpty()) {
+            // responses to other clients
+            return;
+        }
+
+        JsonNode response;
+        try {
+            response = mapper.readTree(payload);
+        } catch (IOException e) {
+            LOGGER.warning("Shadow: invalid response on " + topic);
+            return;
+        }
+
+        Request request = requests.get(response.path("clientToken").asText());
+        if (request == null) {
+            // sent by another client
+            return;
+        }
+
+        request.response = new String(payload, StandardCharsets.UTF_8);
+        request.code = accepted ? 0 : response.path("code").asInt((int) AWSIotDeviceErrorCode.BAD_REQUEST.getValue());
+        request.done.countDown();
+    }
+
+    private static class Request {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile String response;
+        private volatile long code;
+
+    }
+
+    private class ShadowTopic extends AWSIotTopic {
+
+        public ShadowTopic() {
+            super(TOPIC_PREFIX + "+" + SHADOW_TOPIC + "#");
+        }
+
+        @Override
+        public void onMessage(AWSIotMessage message) {
+            ShadowMultiplexer.this.onMessage(message.getTopic(), message.getPayload());
+        }
+
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+// Coalesces concurrent calls for the same key: the first caller runs the call,
+// the others wait for it and get the same result, or the same exception.
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Call<V>> calls = new ConcurrentHashMap<>();
+
+    public V execute(K key, Callable<V> callable) throws Exception {
+        Call<V> call = new Call<>();
+        Call<V> inFlight = calls.putIfAbsent(key, call);
+        if (inFlight != null) {
+            return inFlight.await();
+        }
+
+        try {
+            call.value = callable.call();
+            return call.value;
+        } catch (Exception e) {
+            call.exception = e;
+            throw e;
+        } catch (Error e) {
+            call.exception = new RuntimeException(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+            call.done.countDown();
+        }
+    }
+
+    private static class Call<V> {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile V value;
+        private volatile Exception exception;
+
+        public V await() throws Exception {
+            done.await();
+            if (exception != null) {
+                throw exception;
+            }
+            return value;
+        }
+
+    }
+
+}
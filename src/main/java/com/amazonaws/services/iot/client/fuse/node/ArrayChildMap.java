@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Immutable children map of a small directory, kept as two sorted arrays.
+// Updates return a new copy, so readers never need a lock. Directories that
+// grow beyond a few entries are moved to a hash map by Node.
+final class ArrayChildMap extends AbstractMap<String, Node> {
+
+    static final ArrayChildMap EMPTY = new ArrayChildMap(new String[0], new Node[0]);
+
+    private final String[] keys;
+    private final Node[] values;
+
+    private ArrayChildMap(String[] keys, Node[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    static ArrayChildMap of(Map<String, Node> map) {
+        if (map.isEmpty()) {
+            return EMPTY;
+        }
+
+        String[] keys = map.keySet().toArray(new String[map.size()]);
+        Arrays.sort(keys);
+        Node[] values = new Node[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = map.get(keys[i]);
+        }
+        return new ArrayChildMap(keys, values);
+    }
+
+    ArrayChildMap with(String key, Node value) {
+        int i = Arrays.binarySearch(keys, key);
+        if (i >= 0) {
+            Node[] newValues = values.clone();
+            newValues[i] = value;
+            return new ArrayChildMap(keys, newValues);
+        }
+
+        i = -i - 1;
+        String[] newKeys = new String[keys.length + 1];
+        Node[] newValues = new Node[keys.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, i);
+        System.arraycopy(values, 0, newValues, 0, i);
+        newKeys[i] = key;
+        newValues[i] = value;
+        System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+        System.arraycopy(values, i, newValues, i + 1, keys.length - i);
+        return new ArrayChildMap(newKeys, newValues);
+    }
+
+    ArrayChildMap without(String key) {
+        int i = Arrays.binarySearch(keys, key);
+        if (i < 0) {
+            return this;
+        }
+        if (keys.length == 1) {
+            return EMPTY;
+        }
+
+        String[] newKeys = new String[keys.length - 1];
+        Node[] newValues = new Node[keys.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, i);
+        System.arraycopy(values, 0, newValues, 0, i);
+        System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+        System.arraycopy(values, i + 1, newValues, i, keys.length - i - 1);
+        return new ArrayChildMap(newKeys, newValues);
+    }
+
+    // sorted, shared with the map and not to be modified
+    String[] keys() {
+        return keys;
+    }
+
+    @Override
+    public Node get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int i = Arrays.binarySearch(keys, (String) key);
+        return (i >= 0) ? values[i] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Node>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Node>>() {
+            @Override
+            public Iterator<Map.Entry<String, Node>> iterator() {
+                return new Iterator<Map.Entry<String, Node>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Node> next() {
+                        if (next >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<String, Node> entry = new SimpleImmutableEntry<>(keys[next], values[next]);
+                        next++;
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+}
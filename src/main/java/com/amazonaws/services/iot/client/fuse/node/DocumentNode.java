@@ -16,6 +16,8 @@
 package com.amazonaws.services.iot.client.fuse.node;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import net.fusejna.ErrorCodes;
 import net.fusejna.StructFuseFileInfo.FileInfoWrapper;
@@ -25,8 +27,10 @@ public class DocumentNode extends Node {
     private static final int MAX_DOCUMENT_SIZE = 64 * 1024;
 
     private int maxDocumentSize = MAX_DOCUMENT_SIZE;
-    private String document = "";
-    private boolean isDirty;
+
+    // the document is fetched once when the file is opened, all reads and
+    // writes through that handle then use the same copy
+    private final HandleTable<Snapshot> snapshots = new HandleTable<>();
 
     public DocumentNode(Node parent, String name) {
         super(parent, name, false);
@@ -36,16 +40,20 @@ public class DocumentNode extends Node {
         maxDocumentSize = maxSize;
     }
 
+    public boolean hasOpenFiles() {
+        return !snapshots.isEmpty();
+    }
+
     public String getDocument() throws Exception {
-        return document;
+        return "";
     }
 
     public void setDocument(String document) throws Exception {
-        this.document = document;
     }
 
     @Override
     public synchronized void init() {
+        String document = null;
         try {
             document = getDocument();
         } catch (Exception e) {
@@ -53,39 +61,71 @@ public class DocumentNode extends Node {
         if (document == null) {
             document = "";
         }
-        size = document.length();
+        size = document.getBytes(StandardCharsets.UTF_8).length;
 
         super.init();
     }
 
     @Override
-    public synchronized int read(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
-        try {
-            document = getDocument();
-        } catch (Exception e) {
+    public int open(String path, FileInfoWrapper info) {
+        Snapshot snapshot = fetch();
+        if (snapshot == null) {
             return -ErrorCodes.EIO();
         }
-        size = document.length();
 
-        if (offset < 0) {
-            offset = 0;
-        }
-        if (offset >= size) {
-            return 0;
+        snapshots.open(info, snapshot);
+        return 0;
+    }
+
+    private Snapshot fetch() {
+        String document;
+        try {
+            document = getDocument();
+        } catch (Exception e) {
+            return null;
         }
-        if (bufSize < 0) {
-            bufSize = size;
+        if (document == null) {
+            document = "";
         }
-        if (offset + bufSize > size) {
-            bufSize = size - offset;
+        Snapshot snapshot = new Snapshot(document);
+        size = snapshot.data.length;
+        return snapshot;
+    }
+
+    @Override
+    public int read(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
+        Snapshot snapshot = snapshots.get(info);
+        if (snapshot == null) {
+            snapshot = fetch();
+            if (snapshot == null) {
+                return -ErrorCodes.EIO();
+            }
         }
 
-        buf.put(document.getBytes(), (int) offset, (int) bufSize);
-        return (int) bufSize;
+        synchronized (snapshot) {
+            byte[] data = snapshot.data;
+            long length = data.length;
+
+            if (offset < 0) {
+                offset = 0;
+            }
+            if (offset >= length) {
+                return 0;
+            }
+            if (bufSize < 0) {
+                bufSize = length;
+            }
+            if (offset + bufSize > length) {
+                bufSize = length - offset;
+            }
+
+            buf.put(data, (int) offset, (int) bufSize);
+            return (int) bufSize;
+        }
     }
 
     @Override
-    public synchronized int write(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
+    public int write(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
         if (bufSize <= 0) {
             return 0;
         }
@@ -96,62 +136,108 @@ public class DocumentNode extends Node {
             return -ErrorCodes.ENOSPC();
         }
 
-        StringBuffer strBuffer = new StringBuffer();
-        if (offset > 0) {
-            if (offset <= document.length()) {
-                strBuffer.append(document.substring(0, (int) offset));
-            } else {
-                strBuffer.append(document);
-                long len = document.length();
-                while (len < offset) {
-                    strBuffer.append(" ");
-                    len++;
-                }
-            }
+        Snapshot snapshot = snapshots.get(info);
+        if (snapshot == null) {
+            return -ErrorCodes.EBADF();
         }
 
-        byte[] data = new byte[(int) bufSize];
-        buf.get(data);
-        strBuffer.append(new String(data));
+        // offsets are in bytes, so the document is edited as UTF-8 bytes and
+        // only decoded when it is sent
+        synchronized (snapshot) {
+            byte[] data = snapshot.data;
+            int end = (int) (offset + bufSize);
+            if (end > data.length) {
+                int length = data.length;
+                data = Arrays.copyOf(data, end);
+                if (offset > length) {
+                    Arrays.fill(data, length, (int) offset, (byte) ' ');
+                }
+            } else {
+                data = data.clone();
+            }
+            buf.get(data, (int) offset, (int) bufSize);
 
-        if (offset + bufSize < document.length()) {
-            strBuffer.append(document.substring((int) (offset + bufSize)));
+            snapshot.setData(data);
+            size = data.length;
         }
 
-        document = strBuffer.toString();
-        size = document.length();
-        isDirty = true;
-
         return (int) bufSize;
     }
 
     @Override
-    public synchronized int release(String path, FileInfoWrapper info) {
-        try {
-            if (isDirty) {
+    public int release(String path, FileInfoWrapper info) {
+        Snapshot snapshot = snapshots.release(info);
+        if (snapshot == null) {
+            return 0;
+        }
+
+        synchronized (snapshot) {
+            if (snapshot.isDirty) {
                 try {
-                    setDocument(document);
+                    setDocument(snapshot.getDocument());
                 } catch (Exception e) {
                     return -ErrorCodes.EIO();
                 }
             }
-        } finally {
-            isDirty = false;
         }
         return 0;
     }
 
     @Override
-    public synchronized int truncate(String path, long offset) {
-        if (size <= 0 || offset >= size) {
+    public int truncate(String path, long offset) {
+        // not through an open file, the change is applied right away
+        Snapshot snapshot = fetch();
+        if (snapshot == null) {
+            return -ErrorCodes.EIO();
+        }
+        if (offset >= snapshot.data.length) {
             return 0;
         }
 
-        document = document.substring(0, (int) offset);
+        try {
+            snapshot.setData(Arrays.copyOf(snapshot.data, (int) offset));
+            setDocument(snapshot.getDocument());
+        } catch (Exception e) {
+            return -ErrorCodes.EIO();
+        }
         size = offset;
-        isDirty = true;
+        return 0;
+    }
 
+    @Override
+    public int ftruncate(String path, long offset, FileInfoWrapper info) {
+        Snapshot snapshot = snapshots.get(info);
+        if (snapshot == null) {
+            return truncate(path, offset);
+        }
+
+        synchronized (snapshot) {
+            if (offset < snapshot.data.length) {
+                snapshot.setData(Arrays.copyOf(snapshot.data, (int) offset));
+                size = offset;
+            }
+        }
         return 0;
     }
 
+    private static class Snapshot {
+
+        private byte[] data;
+        private boolean isDirty;
+
+        public Snapshot(String document) {
+            this.data = document.getBytes(StandardCharsets.UTF_8);
+        }
+
+        public void setData(byte[] data) {
+            this.data = data;
+            this.isDirty = true;
+        }
+
+        public String getDocument() {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+    }
+
 }
@@ -37,6 +37,11 @@ public class EndpointNode extends Node {
         }
     }
 
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
     @Override
     public int read(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
         final String str = endpoint.substring((int) offset,
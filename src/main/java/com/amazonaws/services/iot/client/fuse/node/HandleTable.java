@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.fusejna.StructFuseFileInfo.FileInfoWrapper;
+
+// Per-open-file state of a node, keyed by the FUSE file handle assigned in
+// open(). Handles are unique across the whole filesystem.
+public class HandleTable<T> {
+
+    private static final AtomicLong nextHandle = new AtomicLong(1);
+
+    private final ConcurrentMap<Long, T> handles = new ConcurrentHashMap<>();
+
+    public long open(FileInfoWrapper info, T state) {
+        long fh = nextHandle.getAndIncrement();
+        handles.put(fh, state);
+        info.fh(fh);
+        return fh;
+    }
+
+    public T get(FileInfoWrapper info) {
+        if (info == null) {
+            return null;
+        }
+        return handles.get(info.fh());
+    }
+
+    public boolean isEmpty() {
+        return handles.isEmpty();
+    }
+
+    public T release(FileInfoWrapper info) {
+        if (info == null) {
+            return null;
+        }
+        return handles.remove(info.fh());
+    }
+
+}
@@ -37,6 +37,11 @@ public class InfoNode extends Node {
         this.size = this.info.length();
     }
 
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
     @Override
     public int read(final String path, final ByteBuffer buf, final long bufSize, final long offset,
             final FileInfoWrapper infoWrapper) {
@@ -26,16 +26,32 @@ import net.fusejna.types.TypeMode.NodeType;
 
 public class LinkNode extends Node {
 
-	private final Node source;
+	private volatile Node source;
+	private final String sourcePath;
 	
 	public LinkNode(Node parent, String name, Node target) {
 		super(parent, name, false);
 		
 		this.source = target;
+		this.sourcePath = null;
 	}
 
+	// the source is only looked up when the link is followed, listing the
+	// link makes no request
+	public LinkNode(Node parent, String name, String sourcePath) {
+		super(parent, name, false);
+
+		this.sourcePath = sourcePath;
+	}
+
+	// null if the source of a lazy link does not exist
 	public Node getSource() {
-		return source;
+		Node node = source;
+		if (sourcePath != null && (node == null || node.isDetached())) {
+			node = root.find(sourcePath, false);
+			source = node;
+		}
+		return node;
 	}
 
 	@Override
@@ -48,7 +64,9 @@ public class LinkNode extends Node {
     @Override
 	public int readlink(ByteBuffer buffer, long size) {
         String path;
-        if (this.parent == source.parent) {
+        if (sourcePath != null) {
+            path = this.getRelativePathToRoot() + sourcePath;
+        } else if (this.parent == source.parent) {
             path = source.name;
         } else {
             path = this.getRelativePathToRoot() + source.getAbsolutePath();
@@ -73,35 +91,58 @@ public class LinkNode extends Node {
     
 	@Override
 	public Node find(String path) {
-		return source.find(path);
+		Node source = getSource();
+		return (source != null) ? source.find(path) : null;
 	}
 	
 	@Override
 	public int readdir(DirectoryFiller filler) {
-		return source.readdir(filler);
+		Node source = getSource();
+		return (source != null) ? source.readdir(filler) : -ErrorCodes.ENOENT();
 	}
 	
+	@Override
+	public boolean isCacheable() {
+		Node source = getSource();
+		return source != null && source.isCacheable();
+	}
+
 	@Override
 	public int read(String path, ByteBuffer buffer, long size, long offset, FileInfoWrapper info) {
-		return source.read(path, buffer, size, offset, info);
+		Node source = getSource();
+		return (source != null) ? source.read(path, buffer, size, offset, info) : -ErrorCodes.ENOENT();
 	}
 
 	@Override
 	public int open(String path, FileInfoWrapper info) {
-		return source.open(path, info);
+		Node source = getSource();
+		return (source != null) ? source.open(path, info) : -ErrorCodes.ENOENT();
 	}
 
 	@Override
 	public int create(String name, ModeWrapper mode, FileInfoWrapper info) {
-		return source.create(name, mode, info);
+		Node source = getSource();
+		return (source != null) ? source.create(name, mode, info) : -ErrorCodes.ENOENT();
 	}
 
 	public int write(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
-		return source.write(path, buf, bufSize, offset, info);
+		Node source = getSource();
+		return (source != null) ? source.write(path, buf, bufSize, offset, info) : -ErrorCodes.ENOENT();
 	}
 	
 	public int release(String path, FileInfoWrapper info) {
-		return source.release(path, info);
+		Node source = getSource();
+		return (source != null) ? source.release(path, info) : -ErrorCodes.ENOENT();
+	}
+
+	public int flush(String path, FileInfoWrapper info) {
+		Node source = getSource();
+		return (source != null) ? source.flush(path, info) : -ErrorCodes.ENOENT();
+	}
+
+	public int fsync(String path, FileInfoWrapper info) {
+		Node source = getSource();
+		return (source != null) ? source.fsync(path, info) : -ErrorCodes.ENOENT();
 	}
 	
 }
\ No newline at end of file
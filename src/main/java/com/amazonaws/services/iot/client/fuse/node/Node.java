@@ -17,17 +17,10 @@ package com.amazonaws.services.iot.client.fuse.node;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import com.amazonaws.services.iot.client.fuse.AwsIot;
 
@@ -41,18 +34,36 @@ import net.fusejna.types.TypeMode.NodeType;
 public class Node {
 
     private static final int MAX_DIR_LEVEL = 64;
-    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+
+    // directories up to this size keep their children in a sorted array
+    private static final int SMALL_DIR_SIZE = 8;
+
+    // remembered misses per directory
+    private static final int MAX_MISSES = 1024;
+
+    private static final AtomicIntegerFieldUpdater<Node> REFRESHING = AtomicIntegerFieldUpdater.newUpdater(
+            Node.class, "refreshing");
 
     protected final String name;
     protected final Node root;
     protected final Node parent;
-    protected final Map<String, Node> children;
+    protected volatile Map<String, Node> children;
     protected final boolean isDir;
-    protected long reInitDelay;
-    protected Future<?> reInitTask;
-    protected boolean initDone;
+    protected long refreshInterval;
+    protected volatile long expiryTime;
+    protected int accessCount;
+    protected boolean childrenChanged;
+    protected boolean loadedFromCache;
+    protected volatile boolean initDone;
+    protected volatile boolean detached;
+    private volatile int refreshing;
+    // incremented whenever the set of child names changes
+    protected volatile int modCount;
+    private volatile Listing listing;
+    // names recently found missing, allocated on the first miss
+    private volatile Map<String, Miss> misses;
     protected long size;
-    protected Date creationDate;
+    protected long creationTime;
     protected AwsIot iotClient;
 
     public Node() {
@@ -71,8 +82,9 @@ public class Node {
         }
         this.name = name;
         this.isDir = isDir;
-        this.children = new HashMap<>();
-        this.creationDate = new Date();
+        // leaves share the empty map and never allocate their own
+        this.children = ArrayChildMap.EMPTY;
+        this.creationTime = System.currentTimeMillis();
     }
 
     public Node getRoot() {
@@ -95,6 +107,36 @@ public class Node {
         return initDone;
     }
 
+    public boolean isDetached() {
+        return detached;
+    }
+
+    // called once the node has been removed from the tree
+    protected void detach() {
+        detached = true;
+    }
+
+    // true if each node on the path from the root still maps its name to the
+    // next one. Directories only populated by point lookups need not be
+    // initialized.
+    boolean isReachable() {
+        for (Node node = this; node.parent != null; node = node.parent) {
+            if (node.detached || node.parent.children.get(node.name) != node) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // starts refreshing the stale ancestors, as a lookup through them would
+    void refreshAncestors() {
+        for (Node node = parent; node != null; node = node.parent) {
+            if (node.isStale()) {
+                node.refresh();
+            }
+        }
+    }
+
     public AwsIot getIotClient() {
         return iotClient;
     }
@@ -103,31 +145,97 @@ public class Node {
         this.iotClient = iotClient;
     }
 
-    public long getReInitDelay() {
-        return this.reInitDelay;
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    // the node is refreshed when accessed more than the given time after it
+    // was loaded, 0 to never refresh
+    public void setRefreshInterval(long interval) {
+        refreshInterval = interval;
     }
 
-    public void setReInitDelay(int delay) {
-        if (reInitTask != null) {
-            reInitTask.cancel(false);
-            reInitTask = null;
+    // subclasses load their children first, then call this to mark the node
+    // as loaded. Refreshes run it outside of ensureInit(), hence the lock.
+    public synchronized void init() {
+        if (loadedFromCache) {
+            // children restored from a previous mount, refreshed right away
+            expiryTime = 0;
+        } else if (refreshInterval > 0) {
+            if (iotClient != null) {
+                // on refresh, adapt the interval to whether the listing changed
+                RefreshScheduler scheduler = iotClient.getRefreshScheduler();
+                refreshInterval = initDone ? scheduler.nextInterval(refreshInterval, childrenChanged) : scheduler
+                        .clamp(refreshInterval);
+            }
+            expiryTime = System.currentTimeMillis() + RefreshScheduler.jitter(refreshInterval);
         }
+        childrenChanged = false;
+        loadedFromCache = false;
+        accessCount = 0;
+        initDone = true;
+    }
 
-        if (delay <= 0) {
+    // called while loading, when the children come from the metadata cache
+    public void setLoadedFromCache() {
+        loadedFromCache = true;
+    }
+
+    public boolean isStale() {
+        return initDone && refreshInterval > 0 && System.currentTimeMillis() >= expiryTime;
+    }
+
+    int getAccessCount() {
+        return accessCount;
+    }
+
+    // initializes the node on first access. Once loaded, a stale node keeps
+    // serving its current children while it is refreshed in the background.
+    public void ensureInit() {
+        if (!initDone) {
+            // concurrent first accesses wait for a single init()
+            synchronized (this) {
+                if (!initDone) {
+                    init();
+                }
+            }
+            if (isStale()) {
+                // reconcile a listing restored from the cache right away
+                refresh();
+            }
             return;
         }
 
-        reInitDelay = delay;
-        reInitTask = scheduler.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                initDone = false;
+        if (refreshInterval > 0) {
+            // only used to order refreshes, lost updates don't matter
+            accessCount++;
+            if (System.currentTimeMillis() >= expiryTime) {
+                refresh();
             }
-        }, 0, reInitDelay, TimeUnit.MILLISECONDS);
+        }
     }
 
-    public void init() {
-        initDone = true;
+    public void refresh() {
+        if (iotClient == null || !REFRESHING.compareAndSet(this, 0, 1)) {
+            return;
+        }
+
+        try {
+            iotClient.getRefreshScheduler().schedule(this, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        init();
+                    } catch (RuntimeException e) {
+                        // still stale, tried again on next access
+                    } finally {
+                        refreshing = 0;
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing = 0;
+        }
     }
 
     public Node find(String path) {
@@ -135,57 +243,65 @@ public class Node {
     }
 
     public Node find(String path, boolean follow) {
-        if (path == null) {
+        if (path == null || path.isEmpty()) {
             return null;
         }
 
         Node node = null;
+        int start = 0;
         if (path.charAt(0) == '/') {
-            node = root;
-            if (path.length() == 1) {
-                return node;
+            if (this != root) {
+                return root.find(path, follow);
             }
-            path = path.substring(1);
+            node = root;
+            start = 1;
         } else {
             node = this;
         }
 
-        List<String> dirs = Arrays.asList(path.split("/"));
-        synchronized (this) {
-            int levels = 0;
-            for (Iterator<String> it = dirs.iterator(); it.hasNext();) {
-                if (levels++ > MAX_DIR_LEVEL) {
-                    return null;
-                }
+        int levels = 0;
+        int length = path.length();
+        while (start < length) {
+            if (levels++ > MAX_DIR_LEVEL) {
+                return null;
+            }
+
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            String dir = path.substring(start, end);
+            start = end + 1;
 
-                String dir = it.next();
-                if (dir.equals("..")) {
+            if (dir.isEmpty() || dir.equals(".")) {
+                continue;
+            } else if (dir.equals("..")) {
+                if (node.parent != null) {
                     node = node.parent;
-                    continue;
-                } else if (dir.equals(".")) {
-                    continue;
                 }
+                continue;
+            }
 
-                if (!node.initDone) {
-                    node.init();
-                }
+            // no tree-wide lock is taken here, children maps are concurrent
+            // and each directory serializes its own init()
+            node = node.lookupChild(dir);
+            if (node == null) {
+                return null;
+            }
 
-                node = node.children.get(dir);
+            if (follow && node instanceof LinkNode) {
+                node = ((LinkNode) node).getSource();
                 if (node == null) {
                     return null;
                 }
-
-                if (follow && node instanceof LinkNode) {
-                    node = ((LinkNode) node).getSource();
-                }
-
-                if (!node.isDir && it.hasNext()) {
-                    return null;
-                }
             }
 
-            return node;
+            if (!node.isDir && start < length) {
+                return null;
+            }
         }
+
+        return node;
     }
 
     public String getAbsolutePath() {
@@ -222,38 +338,228 @@ public class Node {
         } else {
             stat.setMode(NodeType.FILE).size(size);
         }
-        stat.setAllTimesMillis(creationDate.getTime());
+        stat.setAllTimesMillis(creationTime);
         return 0;
     }
 
     public void addChildren(List<? extends Node> nodes) {
         for (Node node : nodes) {
-            children.put(node.name, node);
+            addChildren(node);
         }
     }
 
+    // replaces the children with the given list, in a single step, keeping
+    // the existing nodes of the same names
     public void updateChildren(List<? extends Node> nodes) {
-        Set<String> namesSet = new HashSet<>();
-        for (Node node : nodes) {
-            children.putIfAbsent(node.name, node);
-            namesSet.add(node.name);
+        synchronized (this) {
+            Map<String, Node> current = children;
+            Map<String, Node> newChildren = new ConcurrentHashMap<>();
+            for (Node node : nodes) {
+                Node existing = current.get(node.name);
+                newChildren.put(node.name, (existing != null) ? existing : node);
+            }
+            replaceChildren(newChildren);
         }
-        children.keySet().retainAll(namesSet);
     }
 
     public void addChildren(Node node) {
-        children.put(node.name, node);
+        synchronized (this) {
+            Node previous = putChild(node);
+            if (previous != null && previous != node) {
+                previous.detach();
+            }
+        }
+    }
+
+    // small directories are copied on write, larger ones are moved to a
+    // concurrent map once they outgrow the array
+    protected synchronized Node putChild(Node node) {
+        Map<String, Node> current = children;
+        if (current instanceof ArrayChildMap) {
+            ArrayChildMap map = (ArrayChildMap) current;
+            Node previous = map.get(node.name);
+            if (previous != null || map.size() < SMALL_DIR_SIZE) {
+                children = map.with(node.name, node);
+                if (previous == null) {
+                    modCount++;
+                }
+                return previous;
+            }
+            current = new ConcurrentHashMap<>(map);
+            children = current;
+        }
+        Node previous = current.put(node.name, node);
+        if (previous == null) {
+            modCount++;
+        }
+        return previous;
     }
 
     public Node getChild(String name) {
         return children.get(name);
     }
 
+    // resolves a name on the way down a path. Listings that can fetch a
+    // single entry don't need to be loaded, or refreshed, to find one.
+    public Node lookupChild(String name) {
+        if (!canLookup()) {
+            ensureInit();
+            return getChild(name);
+        }
+
+        boolean loaded = initDone;
+        if (loaded) {
+            ensureInit();
+        }
+        Node node = getChild(name);
+        if (node != null || (loaded && !isStale())) {
+            return node;
+        }
+        if (isKnownMissing(name)) {
+            return null;
+        }
+
+        try {
+            node = lookupMissing(name);
+        } catch (RuntimeException e) {
+            if (loaded) {
+                return null;
+            }
+            ensureInit();
+            return getChild(name);
+        }
+        if (node == null) {
+            addMissing(name);
+        }
+        return node;
+    }
+
+    // a miss is only trusted for a short time, and while the listing hasn't
+    // changed since
+    private boolean isKnownMissing(String name) {
+        Map<String, Miss> current = misses;
+        if (current == null) {
+            return false;
+        }
+
+        Miss miss = current.get(name);
+        if (miss == null) {
+            return false;
+        }
+        if (miss.version != getListingVersion() || System.currentTimeMillis() >= miss.expiryTime) {
+            current.remove(name, miss);
+            return false;
+        }
+        return true;
+    }
+
+    private void addMissing(String name) {
+        long timeout = (iotClient != null) ? iotClient.getNegativeTimeout() : 0;
+        if (timeout <= 0) {
+            return;
+        }
+
+        Map<String, Miss> current = misses;
+        if (current == null) {
+            synchronized (this) {
+                current = misses;
+                if (current == null) {
+                    current = new ConcurrentHashMap<>();
+                    misses = current;
+                }
+            }
+        }
+        if (current.size() >= MAX_MISSES) {
+            current.clear();
+        }
+        current.put(name, new Miss(getListingVersion(), System.currentTimeMillis() + timeout));
+    }
+
+    protected boolean canLookup() {
+        return false;
+    }
+
+    // fetches a single child missing from the listing and adds it, null if
+    // it doesn't exist
+    protected Node lookupMissing(String name) {
+        return null;
+    }
+
+    protected synchronized void replaceChildren(Map<String, Node> newChildren) {
+        Map<String, Node> previous = children;
+        children = compact(newChildren);
+        if (!previous.keySet().equals(newChildren.keySet())) {
+            childrenChanged = true;
+            modCount++;
+        }
+        for (Map.Entry<String, Node> entry : previous.entrySet()) {
+            if (newChildren.get(entry.getKey()) != entry.getValue()) {
+                entry.getValue().detach();
+            }
+        }
+    }
+
+    protected synchronized void removeChild(Node node) {
+        Map<String, Node> current = children;
+        if (current instanceof ArrayChildMap) {
+            if (current.get(node.name) == node) {
+                children = ((ArrayChildMap) current).without(node.name);
+                node.detach();
+                modCount++;
+            }
+        } else if (current.remove(node.name, node)) {
+            node.detach();
+            modCount++;
+        }
+    }
+
+    private static Map<String, Node> compact(Map<String, Node> map) {
+        if (map.size() <= SMALL_DIR_SIZE) {
+            return ArrayChildMap.of(map);
+        }
+        if (map instanceof ConcurrentHashMap) {
+            return map;
+        }
+        return new ConcurrentHashMap<>(map);
+    }
+
+    // fuse-jna fills the whole directory at offset 0, so the entries are
+    // served from a sorted snapshot that is only rebuilt after a change. The
+    // filler stops on its own once the reply buffer is full.
     public int readdir(DirectoryFiller filler) {
-        filler.add(children.keySet());
+        filler.add(Arrays.asList(getListing()));
         return 0;
     }
 
+    // changes whenever the names returned by listNames() change
+    protected int getListingVersion() {
+        return modCount;
+    }
+
+    protected String[] listNames() {
+        Map<String, Node> current = children;
+        if (current instanceof ArrayChildMap) {
+            return ((ArrayChildMap) current).keys();
+        }
+        String[] names = current.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        return names;
+    }
+
+    protected String[] getListing() {
+        // read the version first, a change while listing only causes an
+        // extra rebuild next time
+        int version = getListingVersion();
+        Listing current = listing;
+        if (current != null && current.version == version) {
+            return current.names;
+        }
+
+        String[] names = listNames();
+        listing = new Listing(version, names);
+        return names;
+    }
+
     public int link(String name, Node sourceNode) {
         LinkNode node = new LinkNode(this, name, sourceNode);
         int r = sourceNode.accept(node);
@@ -272,7 +578,7 @@ public class Node {
             return -ErrorCodes.ENOTEMPTY();
         }
 
-        parent.children.remove(name);
+        parent.removeChild(this);
         return 0;
     }
 
@@ -285,10 +591,16 @@ public class Node {
             return -ErrorCodes.ENOTEMPTY();
         }
 
-        parent.children.remove(name);
+        parent.removeChild(this);
         return 0;
     }
 
+    // content that doesn't change for the life of the node may be kept in
+    // the kernel page cache, everything else is read through on each access
+    public boolean isCacheable() {
+        return false;
+    }
+
     public int read(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
         return 0;
     }
@@ -313,10 +625,22 @@ public class Node {
         return 0;
     }
 
+    public int flush(String path, FileInfoWrapper info) {
+        return 0;
+    }
+
+    public int fsync(String path, FileInfoWrapper info) {
+        return 0;
+    }
+
     public int truncate(String path, long offset) {
         return 0;
     }
 
+    public int ftruncate(String path, long offset, FileInfoWrapper info) {
+        return truncate(path, offset);
+    }
+
     public int readlink(ByteBuffer buffer, long size2) {
         return 0;
     }
@@ -333,4 +657,24 @@ public class Node {
         return 0;
     }
 
+    private static class Miss {
+        final int version;
+        final long expiryTime;
+
+        Miss(int version, long expiryTime) {
+            this.version = version;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    private static class Listing {
+        final int version;
+        final String[] names;
+
+        Listing(int version, String[] names) {
+            this.version = version;
+            this.names = names;
+        }
+    }
+
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs the background refreshes of stale directories. Directories only
+// become due for a refresh when they are accessed after their refresh
+// interval, so listings nobody looks at are never refreshed. At most a fixed
+// number of refreshes run at once, the others wait in a queue ordered by how
+// often the directory was accessed since it was last loaded.
+//
+// The refresh interval of each directory adapts to how often its listing
+// changes: it is halved when a refresh finds changes, and grows by half when
+// it doesn't, within the configured bounds.
+public class RefreshScheduler {
+
+    public static final int DEFAULT_MAX_CONCURRENT_REFRESHES = 4;
+    public static final long DEFAULT_MIN_INTERVAL = 10 * 1000;
+    public static final long DEFAULT_MAX_INTERVAL = 15 * 60 * 1000;
+
+    private static final long IDLE_TIMEOUT = 60 * 1000;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong nextOrder = new AtomicLong();
+    private final long minInterval;
+    private final long maxInterval;
+
+    public RefreshScheduler() {
+        this(DEFAULT_MAX_CONCURRENT_REFRESHES, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL);
+    }
+
+    public RefreshScheduler(int maxConcurrentRefreshes, long minInterval, long maxInterval) {
+        if (maxConcurrentRefreshes <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of concurrent refreshes: "
+                    + maxConcurrentRefreshes);
+        }
+        if (minInterval <= 0 || maxInterval < minInterval) {
+            throw new IllegalArgumentException("Invalid refresh interval bounds: " + minInterval + ", " + maxInterval);
+        }
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.executor = new ThreadPoolExecutor(maxConcurrentRefreshes, maxConcurrentRefreshes, IDLE_TIMEOUT,
+                TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "refresh-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        // idle threads exit, so an unused scheduler holds no threads
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public void schedule(Node node, Runnable refresh) {
+        executor.execute(new Task(refresh, node.getAccessCount(), nextOrder.getAndIncrement()));
+    }
+
+    public long clamp(long interval) {
+        return Math.max(minInterval, Math.min(maxInterval, interval));
+    }
+
+    public long nextInterval(long interval, boolean changed) {
+        return clamp(changed ? interval / 2 : interval + interval / 2);
+    }
+
+    // spreads the expiry times of directories loaded together by +/-10%
+    public static long jitter(long interval) {
+        long spread = interval / 5;
+        if (spread <= 0) {
+            return interval;
+        }
+        return interval - spread / 2 + ThreadLocalRandom.current().nextLong(spread + 1);
+    }
+
+    private static class Task implements Runnable, Comparable<Task> {
+
+        private final Runnable refresh;
+        private final int accessCount;
+        private final long order;
+
+        public Task(Runnable refresh, int accessCount, long order) {
+            this.refresh = refresh;
+            this.accessCount = accessCount;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            refresh.run();
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (accessCount != other.accessCount) {
+                return (accessCount > other.accessCount) ? -1 : 1;
+            }
+            return Long.compare(order, other.order);
+        }
+
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.amazonaws.services.iot.client.fuse.RelationIndex;
+
+import net.fusejna.ErrorCodes;
+
+// A directory of links served from a reverse index, such as the things a
+// certificate is attached to. It's rebuilt from the index whenever the
+// sources of its target change, and makes no requests of its own: the links
+// only hold the source paths, which are looked up when a link is followed.
+// The links are read-only, the relations are changed from the forward
+// directories.
+public class ReverseLinksNode extends Node {
+
+    private final RelationIndex index;
+    private final String target;
+    private final String sourceDir;
+    private volatile int indexVersion = -1;
+
+    public ReverseLinksNode(Node parent, String name, RelationIndex index, String target, String sourceDir) {
+        super(parent, name, true);
+
+        this.index = index;
+        this.target = target;
+        this.sourceDir = sourceDir;
+    }
+
+    @Override
+    public Node getChild(String name) {
+        update();
+        return super.getChild(name);
+    }
+
+    @Override
+    protected String[] listNames() {
+        update();
+        return super.listNames();
+    }
+
+    @Override
+    protected int getListingVersion() {
+        update();
+        return super.getListingVersion();
+    }
+
+    @Override
+    public int symlink(String name, String path) {
+        return -ErrorCodes.EPERM();
+    }
+
+    @Override
+    public int symunlink(String name) {
+        return -ErrorCodes.EPERM();
+    }
+
+    private void update() {
+        int version = index.getVersion(target);
+        if (version == indexVersion) {
+            return;
+        }
+
+        synchronized (this) {
+            if (version == indexVersion) {
+                return;
+            }
+
+            Map<String, Node> newChildren = new HashMap<>();
+            for (String source : index.getSources(target)) {
+                Node existing = children.get(source);
+                newChildren.put(source, (existing != null) ? existing : new LinkNode(this, source, sourceDir
+                        + source));
+            }
+            replaceChildren(newChildren);
+            indexVersion = version;
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class RootNode extends Node {
+
+    private static final int MAX_PATH_CACHE_SIZE = 256 * 1024;
+    private static final int EVICTION_BATCH = 1024;
+
+    // absolute path to node, resolved without following links. Entries are
+    // validated on every hit, so nodes removed from the tree are never
+    // returned. A full cache evicts a batch of entries not used since the
+    // last eviction, giving a second chance to the others.
+    private final ConcurrentMap<String, CachedPath> pathCache = new ConcurrentHashMap<>();
+
+    public RootNode() {
+        super();
+    }
+
+    @Override
+    public Node find(String path, boolean follow) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+            return super.find(path, follow);
+        }
+
+        CachedPath cached = pathCache.get(path);
+        if (cached != null) {
+            Node node = cached.node;
+            if (node.isReachable()) {
+                cached.used = true;
+                node.refreshAncestors();
+                if (!follow || !(node instanceof LinkNode)) {
+                    return node;
+                }
+
+                Node source = ((LinkNode) node).getSource();
+                if (source != null && source.isReachable()) {
+                    return source;
+                }
+            } else {
+                pathCache.remove(path, cached);
+            }
+        }
+
+        // links in the middle of a path are only traversed when following,
+        // such lookups are not cached
+        Node node = super.find(path, false);
+        if (node == null) {
+            return follow ? super.find(path, true) : null;
+        }
+
+        // transient nodes, created on lookup and never attached to the tree,
+        // are not cached
+        if (isCacheable(path) && node.isReachable()) {
+            if (pathCache.size() >= MAX_PATH_CACHE_SIZE) {
+                evictPaths();
+            }
+            pathCache.put(path, new CachedPath(node));
+        }
+
+        if (follow && node instanceof LinkNode) {
+            return ((LinkNode) node).getSource();
+        }
+        return node;
+    }
+
+    private void evictPaths() {
+        int evicted = 0;
+        Iterator<CachedPath> it = pathCache.values().iterator();
+        while (evicted < EVICTION_BATCH && it.hasNext()) {
+            CachedPath cached = it.next();
+            if (cached.used) {
+                cached.used = false;
+            } else {
+                it.remove();
+                evicted++;
+            }
+        }
+    }
+
+    private static boolean isCacheable(String path) {
+        int length = path.length();
+        int start = 1;
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            int len = end - start;
+            if (len == 0 || (len == 1 && path.charAt(start) == '.')
+                    || (len == 2 && path.charAt(start) == '.' && path.charAt(start + 1) == '.')) {
+                return false;
+            }
+            start = end + 1;
+        }
+        return true;
+    }
+
+    private static class CachedPath {
+
+        private final Node node;
+        private volatile boolean used;
+
+        public CachedPath(Node node) {
+            this.node = node;
+        }
+
+    }
+
+}
@@ -21,6 +21,7 @@ import net.fusejna.ErrorCodes;
 
 import com.amazonaws.services.iot.client.fuse.node.InfoNode;
 import com.amazonaws.services.iot.client.fuse.node.Node;
+import com.amazonaws.services.iot.client.fuse.node.ReverseLinksNode;
 import com.amazonaws.services.iot.model.KeyPair;
 
 public class CertificateNode extends Node {
@@ -35,13 +36,17 @@ public class CertificateNode extends Node {
 
         this.certificateId = certificateId;
         this.certificateArn = certificateArn;
-        this.creationDate = creationDate;
-        this.status = status;
+        if (creationDate != null) {
+            this.creationTime = creationDate.getTime();
+        }
+        // only a couple of distinct values across all the certificates
+        this.status = (status != null) ? status.intern() : null;
 
         addChildren(new InfoNode(this, "id", this.certificateId));
         addChildren(new InfoNode(this, "arn", this.certificateArn));
         addChildren(new InfoNode(this, "status", this.status));
         addChildren(new CertificatePoliciesNode(this, this.certificateArn));
+        addChildren(new ReverseLinksNode(this, "things", iotClient.getCertificateThings(), certificateId, "/things/"));
 
         String prefix = certificateId.substring(0, 10);
         if (certPem != null) {
@@ -16,10 +16,11 @@
 package com.amazonaws.services.iot.client.fuse.node.certificates;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import net.fusejna.types.TypeMode.ModeWrapper;
 
@@ -28,42 +29,70 @@ import com.amazonaws.services.iot.client.fuse.node.Node;
 public class CertificatesNode extends Node {
 
     private static final String NODE_NAME = "certificates";
+    private static final Pattern CERTIFICATE_ID = Pattern.compile("[0-9a-f]{64}");
 
     public CertificatesNode(Node parent) {
         super(parent, NODE_NAME, true);
-        setReInitDelay(30000);
+        setRefreshInterval(30000);
     }
 
     public void updateCertificateChildren(List<CertificateNode> nodes) {
-        HashMap<String, String> aliases = new HashMap<>();
-        for (Entry<String, Node> entry : children.entrySet()) {
-            String alias = entry.getKey();
-            CertificateNode node = (CertificateNode) entry.getValue();
-            if (!alias.equals(node.getCertificateId())) {
-                aliases.put(node.getCertificateId(), alias);
+        synchronized (this) {
+            Map<String, Node> current = children;
+            HashMap<String, String> aliases = new HashMap<>();
+            for (Entry<String, Node> entry : current.entrySet()) {
+                String alias = entry.getKey();
+                CertificateNode node = (CertificateNode) entry.getValue();
+                if (!alias.equals(node.getCertificateId())) {
+                    aliases.put(node.getCertificateId(), alias);
+                }
             }
-        }
 
-        Set<String> namesSet = new HashSet<>();
-        for (Node node : nodes) {
-            String nodeName = node.getName();
-            if (aliases.containsKey(nodeName)) {
-                nodeName = aliases.get(nodeName);
+            Map<String, Node> newChildren = new ConcurrentHashMap<>();
+            for (Node node : nodes) {
+                String nodeName = node.getName();
+                if (aliases.containsKey(nodeName)) {
+                    nodeName = aliases.get(nodeName);
+                }
+                Node existing = current.get(nodeName);
+                newChildren.put(nodeName, (existing != null) ? existing : node);
             }
-            children.putIfAbsent(nodeName, node);
-            namesSet.add(nodeName);
+            replaceChildren(newChildren);
         }
-        children.keySet().retainAll(namesSet);
     }
 
     @Override
     public void init() {
-        synchronized (this) {
-            List<CertificateNode> certificateNodes = iotClient.getCertificates(this);
-            updateCertificateChildren(certificateNodes);
+        List<CertificateNode> certificateNodes = iotClient.getCertificates(this);
+        updateCertificateChildren(certificateNodes);
+
+        super.init();
+    }
+
+    @Override
+    protected boolean canLookup() {
+        return true;
+    }
 
-            super.init();
+    @Override
+    protected Node lookupMissing(String name) {
+        if (!CERTIFICATE_ID.matcher(name).matches()) {
+            return null;
+        }
+
+        CertificateNode node = iotClient.describeCertificate(this, name);
+        if (node == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            Node existing = children.get(name);
+            if (existing != null) {
+                return existing;
+            }
+            addChildren(node);
         }
+        return node;
     }
 
     @Override
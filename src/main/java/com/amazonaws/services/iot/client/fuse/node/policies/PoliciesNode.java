@@ -16,6 +16,7 @@
 package com.amazonaws.services.iot.client.fuse.node.policies;
 
 import java.util.List;
+import java.util.regex.Pattern;
 
 import net.fusejna.types.TypeMode.ModeWrapper;
 
@@ -24,21 +25,46 @@ import com.amazonaws.services.iot.client.fuse.node.Node;
 public class PoliciesNode extends Node {
 
     private static final String NODE_NAME = "policies";
+    private static final Pattern POLICY_NAME = Pattern.compile("[\\w+=,.@-]{1,128}");
     private static final String DEFAULT_POLICY = "{\"Version\":\"2012-10-17\",\"Statement\":[{\"Action\":[\"iot:*\"],\"Resource\":[\"*\"],\"Effect\":\"Allow\"}]}";
 
     public PoliciesNode(Node parent) {
         super(parent, NODE_NAME, true);
-        setReInitDelay(30000);
+        setRefreshInterval(30000);
     }
 
     @Override
     public void init() {
-        synchronized (this) {
-            List<PolicyNode> policyNodes = iotClient.getPolicies(this);
-            updateChildren(policyNodes);
+        List<PolicyNode> policyNodes = iotClient.getPolicies(this);
+        updateChildren(policyNodes);
+
+        super.init();
+    }
+
+    @Override
+    protected boolean canLookup() {
+        return true;
+    }
 
-            super.init();
+    @Override
+    protected Node lookupMissing(String name) {
+        if (!POLICY_NAME.matcher(name).matches()) {
+            return null;
+        }
+
+        PolicyNode node = iotClient.describePolicy(this, name);
+        if (node == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            Node existing = children.get(name);
+            if (existing != null) {
+                return existing;
+            }
+            addChildren(node);
         }
+        return node;
     }
 
     @Override
@@ -30,6 +30,12 @@ public class PolicyDocumentNode extends DocumentNode {
         this.policyVersion = policyVersion;
     }
 
+    // a policy version can't be changed, only the default document can
+    @Override
+    public boolean isCacheable() {
+        return policyVersion != null;
+    }
+
     @Override
     public String getDocument() {
         return iotClient.getPolicy(policyName, policyVersion);
@@ -17,6 +17,7 @@ package com.amazonaws.services.iot.client.fuse.node.policies;
 
 import com.amazonaws.services.iot.client.fuse.node.InfoNode;
 import com.amazonaws.services.iot.client.fuse.node.Node;
+import com.amazonaws.services.iot.client.fuse.node.ReverseLinksNode;
 
 public class PolicyNode extends Node {
 
@@ -26,6 +27,8 @@ public class PolicyNode extends Node {
         addChildren(new InfoNode(this, "arn", policyArn));
         addChildren(new PolicyDocumentNode(this, "document", name, null));
         addChildren(new PolicyVersionsNode(this));
+        addChildren(new ReverseLinksNode(this, "certificates", iotClient.getPolicyCertificates(), name,
+                "/certificates/"));
     }
 
 }
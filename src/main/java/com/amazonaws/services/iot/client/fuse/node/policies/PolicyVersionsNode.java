@@ -31,10 +31,12 @@ public class PolicyVersionsNode extends Node {
 
     @Override
     public void init() {
-        List<Node> versionNodes = iotClient.getPolicyVersions(this, parent.getName());
-        addChildren(versionNodes);
+        synchronized (this) {
+            List<Node> versionNodes = iotClient.getPolicyVersions(this, parent.getName());
+            addChildren(versionNodes);
 
-        super.init();
+            super.init();
+        }
     }
 
     @Override
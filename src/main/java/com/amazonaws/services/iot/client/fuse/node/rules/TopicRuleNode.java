@@ -32,7 +32,9 @@ public class TopicRuleNode extends Node {
 
         this.ruleArn = rule.getRuleArn();
         this.rulePattern = rule.getTopicPattern();
-        this.creationDate = rule.getCreatedAt();
+        if (rule.getCreatedAt() != null) {
+            this.creationTime = rule.getCreatedAt().getTime();
+        }
         this.status = rule.isRuleDisabled() ? "INACTIVE" : "ACTIVE";
 
         addChildren(new InfoNode(this, "arn", ruleArn));
@@ -25,17 +25,15 @@ public class TopicRulesNode extends Node {
 
 	public TopicRulesNode(Node parent) {
 		super(parent, NODE_NAME, true);
-        setReInitDelay(30000);
+        setRefreshInterval(30000);
 	}
 
 	@Override
 	public void init() {
-		synchronized (this) {
-			List<TopicRuleNode> ruleNodes = iotClient.getTopicRules(this);
-			updateChildren(ruleNodes);
+		List<TopicRuleNode> ruleNodes = iotClient.getTopicRules(this);
+		updateChildren(ruleNodes);
 
-			super.init();
-		}
+		super.init();
 	}
 
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.things;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Inverted index of the thing attributes, attribute name to value to thing
+// names. It's updated with the attributes returned by each listing, only the
+// attributes that changed since the previous listing are touched.
+public class AttributeIndex {
+
+    // attributes of each thing, as last indexed
+    private final Map<String, Map<String, String>> attributes = new HashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, Set<String>>> index = new ConcurrentHashMap<>();
+
+    public synchronized void update(Map<String, Map<String, String>> things) {
+        for (String thingName : attributes.keySet().toArray(new String[0])) {
+            if (!things.containsKey(thingName)) {
+                remove(thingName);
+            }
+        }
+
+        for (Map.Entry<String, Map<String, String>> entry : things.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public synchronized void put(String thingName, Map<String, String> thingAttributes) {
+        if (thingAttributes == null) {
+            thingAttributes = Collections.emptyMap();
+        }
+        Map<String, String> previous = attributes.get(thingName);
+        if (previous == null) {
+            previous = Collections.emptyMap();
+        }
+        if (thingAttributes.equals(previous)) {
+            return;
+        }
+
+        for (Map.Entry<String, String> entry : previous.entrySet()) {
+            if (!entry.getValue().equals(thingAttributes.get(entry.getKey()))) {
+                removeEntry(entry.getKey(), entry.getValue(), thingName);
+            }
+        }
+        for (Map.Entry<String, String> entry : thingAttributes.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                addEntry(entry.getKey(), entry.getValue(), thingName);
+            }
+        }
+
+        if (thingAttributes.isEmpty()) {
+            attributes.remove(thingName);
+        } else {
+            attributes.put(thingName, new HashMap<>(thingAttributes));
+        }
+    }
+
+    public synchronized void remove(String thingName) {
+        put(thingName, null);
+    }
+
+    public Set<String> getNames() {
+        return index.keySet();
+    }
+
+    public Set<String> getValues(String name) {
+        Map<String, Set<String>> values = index.get(name);
+        return (values != null) ? values.keySet() : null;
+    }
+
+    public Set<String> getThings(String name, String value) {
+        Map<String, Set<String>> values = index.get(name);
+        return (values != null) ? values.get(value) : null;
+    }
+
+    private void addEntry(String name, String value, String thingName) {
+        ConcurrentMap<String, Set<String>> values = index.get(name);
+        if (values == null) {
+            values = new ConcurrentHashMap<>();
+            index.put(name, values);
+        }
+
+        Set<String> thingNames = values.get(value);
+        if (thingNames == null) {
+            thingNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            values.put(value, thingNames);
+        }
+        thingNames.add(thingName);
+    }
+
+    private void removeEntry(String name, String value, String thingName) {
+        ConcurrentMap<String, Set<String>> values = index.get(name);
+        if (values == null) {
+            return;
+        }
+
+        Set<String> thingNames = values.get(value);
+        if (thingNames == null) {
+            return;
+        }
+        thingNames.remove(thingName);
+        if (thingNames.isEmpty()) {
+            values.remove(value);
+            if (values.isEmpty()) {
+                index.remove(name);
+            }
+        }
+    }
+
+}
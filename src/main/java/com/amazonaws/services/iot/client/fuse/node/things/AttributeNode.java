@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.things;
+
+import java.util.Set;
+
+import com.amazonaws.services.iot.client.fuse.node.Node;
+
+import net.fusejna.DirectoryFiller;
+
+// A transient view of the values of one attribute, evaluated on every
+// lookup like the message ranges.
+public class AttributeNode extends Node {
+
+    private final ThingsNode thingsNode;
+    private final AttributeIndex index;
+
+    public AttributeNode(Node parent, String name, ThingsNode thingsNode, AttributeIndex index) {
+        super(parent, name, true);
+
+        this.thingsNode = thingsNode;
+        this.index = index;
+        this.initDone = true;
+        this.detached = true;
+    }
+
+    @Override
+    public Node getChild(String value) {
+        if (index.getThings(name, value) == null) {
+            return null;
+        }
+        return new AttributeValueNode(this, value, thingsNode, index);
+    }
+
+    @Override
+    public int readdir(DirectoryFiller filler) {
+        Set<String> values = index.getValues(name);
+        if (values != null) {
+            filler.add(values);
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.things;
+
+import java.util.Set;
+
+import com.amazonaws.services.iot.client.fuse.node.LinkNode;
+import com.amazonaws.services.iot.client.fuse.node.Node;
+
+import net.fusejna.DirectoryFiller;
+
+// A transient view of the things with a given attribute value, served from
+// the index without listing the things.
+public class AttributeValueNode extends Node {
+
+    private final ThingsNode thingsNode;
+    private final AttributeIndex index;
+
+    public AttributeValueNode(Node parent, String value, ThingsNode thingsNode, AttributeIndex index) {
+        super(parent, value, true);
+
+        this.thingsNode = thingsNode;
+        this.index = index;
+        this.initDone = true;
+        this.detached = true;
+    }
+
+    @Override
+    public Node getChild(String thingName) {
+        Set<String> thingNames = index.getThings(parent.getName(), name);
+        if (thingNames == null || !thingNames.contains(thingName)) {
+            return null;
+        }
+
+        Node node = thingsNode.getChild(thingName);
+        if (node == null) {
+            return null;
+        }
+        return new LinkNode(this, thingName, node);
+    }
+
+    @Override
+    public int readdir(DirectoryFiller filler) {
+        Set<String> thingNames = index.getThings(parent.getName(), name);
+        if (thingNames != null) {
+            filler.add(thingNames);
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.things;
+
+import com.amazonaws.services.iot.client.fuse.node.Node;
+
+import net.fusejna.DirectoryFiller;
+
+// The 'things/.by-attribute' directory. It lists the attribute names in use,
+// 'by-attribute/<name>/<value>' lists links to the things with that value.
+public class ByAttributeNode extends Node {
+
+    static final String NODE_NAME = ".by-attribute";
+
+    private final ThingsNode thingsNode;
+    private final AttributeIndex index;
+
+    public ByAttributeNode(ThingsNode parent, AttributeIndex index) {
+        super(parent, NODE_NAME, true);
+
+        this.thingsNode = parent;
+        this.index = index;
+    }
+
+    // the index is filled by the things listing
+    @Override
+    public void ensureInit() {
+        thingsNode.ensureInit();
+        super.ensureInit();
+    }
+
+    @Override
+    public Node getChild(String name) {
+        if (index.getValues(name) == null) {
+            return null;
+        }
+        return new AttributeNode(this, name, thingsNode, index);
+    }
+
+    @Override
+    public int readdir(DirectoryFiller filler) {
+        filler.add(index.getNames());
+        return 0;
+    }
+
+}
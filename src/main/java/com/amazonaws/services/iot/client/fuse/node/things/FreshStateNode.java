@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.things;
+
+import com.amazonaws.services.iot.client.fuse.node.DocumentNode;
+import com.amazonaws.services.iot.client.fuse.node.Node;
+
+// Same as the state file, except the shadow document is always retrieved
+// from the service instead of the local cache.
+public class FreshStateNode extends DocumentNode {
+
+    private static final String NODE_NAME = "state-fresh";
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final int MAX_BUFFER_SIZE = 8 * 1024;
+
+    private final StateNode stateNode;
+
+    public FreshStateNode(Node parent, StateNode stateNode) {
+        super(parent, NODE_NAME);
+        setMaxDocumentSize(MAX_BUFFER_SIZE);
+
+        this.stateNode = stateNode;
+    }
+
+    @Override
+    public synchronized void init() {
+        size = DEFAULT_BUFFER_SIZE;
+        initDone = true;
+    }
+
+    @Override
+    public String getDocument() throws Exception {
+        return stateNode.fetchDocument();
+    }
+
+    @Override
+    public void setDocument(String document) throws Exception {
+        stateNode.setDocument(document);
+    }
+
+}
@@ -15,10 +15,12 @@
 
 package com.amazonaws.services.iot.client.fuse.node.things;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import net.fusejna.ErrorCodes;
 
+import com.amazonaws.services.iot.client.fuse.node.LinkNode;
 import com.amazonaws.services.iot.client.fuse.node.Node;
 import com.amazonaws.services.iot.client.fuse.node.certificates.CertificateNode;
 
@@ -33,25 +35,29 @@ public class PrincipalsNode extends Node {
         super(parent, NODE_NAME, true);
 
         this.thingName = thingName;
+        setRefreshInterval(30000);
     }
 
     @Override
     public void init() {
-        synchronized (this) {
-            List<String> principals = iotClient.getPrincipals(this);
-            for (String principal : principals) {
-                // extract Id from ARN
-                principal = principal.substring(principal.lastIndexOf("/") + 1);
-
-                Node node = root.find(CERTIFICATES_PATH + "/" + principal);
-                if (node == null) {
-                    continue;
-                }
-                link(principal, node);
+        List<String> principals = iotClient.getPrincipals(this);
+        List<LinkNode> links = new ArrayList<>();
+        for (String principal : principals) {
+            // extract Id from ARN
+            principal = principal.substring(principal.lastIndexOf("/") + 1);
+
+            Node node = root.find(CERTIFICATES_PATH + "/" + principal);
+            if (node == null) {
+                continue;
+            }
+            LinkNode link = new LinkNode(this, principal, node);
+            if (node.accept(link) == 0) {
+                links.add(link);
             }
-
-            super.init();
         }
+        updateChildren(links);
+
+        super.init();
     }
 
     @Override
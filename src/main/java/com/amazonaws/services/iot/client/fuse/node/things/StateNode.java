@@ -15,18 +15,11 @@
 
 package com.amazonaws.services.iot.client.fuse.node.things;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
-import net.fusejna.StructFuseFileInfo.FileInfoWrapper;
-
-import com.amazonaws.services.iot.client.AWSIotDevice;
-import com.amazonaws.services.iot.client.AWSIotDeviceErrorCode;
 import com.amazonaws.services.iot.client.AWSIotException;
 import com.amazonaws.services.iot.client.AWSIotTimeoutException;
+import com.amazonaws.services.iot.client.fuse.ShadowCache;
 import com.amazonaws.services.iot.client.fuse.node.DocumentNode;
 import com.amazonaws.services.iot.client.fuse.node.Node;
 
@@ -34,22 +27,18 @@ public class StateNode extends DocumentNode {
 
     private static final Logger LOGGER = Logger.getLogger(StateNode.class.getName());
 
-    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-
     private static final String NODE_NAME = "state";
     private static final int DEFAULT_BUFFER_SIZE = 1024;
     private static final int MAX_BUFFER_SIZE = 8 * 1024;
+    private static final long REQUEST_TIMEOUT = 5000;
 
-    private final AWSIotDevice iotDevice;
-
-    private Future<?> timeoutTask;
-    private boolean deviceAttached;
+    private final String thingName;
 
     public StateNode(Node parent) {
         super(parent, NODE_NAME);
         setMaxDocumentSize(MAX_BUFFER_SIZE);
 
-        this.iotDevice = new AWSIotDevice(parent.getName());
+        this.thingName = parent.getName();
     }
 
     @Override
@@ -59,55 +48,30 @@ public class StateNode extends DocumentNode {
         initDone = true;
     }
 
+    // served from the local shadow cache when the document is known
     @Override
-    public synchronized int open(String path, FileInfoWrapper info) {
-        if (!deviceAttached) {
-            LOGGER.info("Attaching device " + path);
-            int r = iotClient.attachDevice(iotDevice);
-            if (r != 0) {
-                return r;
-            }
-            deviceAttached = true;
-        }
-        return 0;
-    }
-
-    private void scheduleDeviceDetach(final String path) {
-        if (timeoutTask != null) {
-            timeoutTask.cancel(false);
+    public String getDocument() throws Exception {
+        ShadowCache cache = iotClient.getShadowCache();
+        String document = cache.get(thingName);
+        if (document != null) {
+            return document;
         }
 
-        timeoutTask = scheduler.schedule(new Runnable() {
-            @Override
-            public void run() {
-                LOGGER.info("Detaching device " + path);
-                int r = iotClient.detachDevice(iotDevice);
-                if (r != 0) {
-                    LOGGER.warning("Close: detach device failure");
-                }
-                deviceAttached = false;
-            }
-        }, 30, TimeUnit.SECONDS);
+        cache.track(thingName);
+        return fetchDocument();
     }
 
-    @Override
-    public synchronized int release(String path, FileInfoWrapper info) {
-        try {
-            return super.release(path, info);
-        } finally {
-            scheduleDeviceDetach(path);
-        }
+    String fetchDocument() throws Exception {
+        String document = requestDocument();
+        iotClient.getShadowCache().update(thingName, document);
+        return document;
     }
 
-    @Override
-    public String getDocument() throws Exception {
+    private String requestDocument() throws Exception {
         try {
-            return iotDevice.get(5000);
+            String document = iotClient.getShadowMultiplexer().get(thingName, REQUEST_TIMEOUT);
+            return (document != null) ? document : "";
         } catch (AWSIotException e) {
-            if (AWSIotDeviceErrorCode.NOT_FOUND == e.getErrorCode()) {
-                return "";
-            }
-            
             LOGGER.warning("Read: read device failure");
             throw new Exception(e);
         } catch (AWSIotTimeoutException e) {
@@ -119,7 +83,8 @@ public class StateNode extends DocumentNode {
     @Override
     public void setDocument(String document) throws Exception {
         try {
-            iotDevice.update(document, 5000);
+            iotClient.getShadowCache().invalidate(thingName);
+            iotClient.getShadowMultiplexer().update(thingName, document, REQUEST_TIMEOUT);
         } catch (AWSIotException e) {
             LOGGER.warning("Close: update device failure");
             throw new Exception(e);
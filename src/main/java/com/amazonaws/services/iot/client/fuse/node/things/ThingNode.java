@@ -17,17 +17,39 @@ package com.amazonaws.services.iot.client.fuse.node.things;
 
 import net.fusejna.ErrorCodes;
 
+import com.amazonaws.services.iot.client.fuse.node.DocumentNode;
 import com.amazonaws.services.iot.client.fuse.node.Node;
 
 public class ThingNode extends Node {
 
+    private volatile long lastAccess = System.currentTimeMillis();
+
     public ThingNode(Node parent, String name) {
         super(parent, name, true);
 
-        addChildren(new StateNode(this));
+        StateNode stateNode = new StateNode(this);
+        addChildren(stateNode);
+        addChildren(new FreshStateNode(this, stateNode));
         addChildren(new PrincipalsNode(this, name));
     }
 
+    void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    boolean isIdle(long now, long timeout) {
+        if (now - lastAccess < timeout) {
+            return false;
+        }
+
+        for (Node node : children.values()) {
+            if (node instanceof DocumentNode && ((DocumentNode) node).hasOpenFiles()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public int rmdir(String path) {
         if (!children.isEmpty()) {
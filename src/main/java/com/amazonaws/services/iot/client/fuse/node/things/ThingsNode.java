@@ -15,37 +15,190 @@
 
 package com.amazonaws.services.iot.client.fuse.node.things;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import net.fusejna.types.TypeMode.ModeWrapper;
 
 import com.amazonaws.services.iot.client.fuse.node.Node;
 
+// Only the names of the things are kept for the listing. The node of a thing
+// is created when it is looked up, and dropped again once it hasn't been
+// accessed for a while and has no open files.
 public class ThingsNode extends Node {
 
     private static final String NODE_NAME = "things";
+    private static final long IDLE_TIMEOUT = 5 * 60 * 1000;
+    private static final long EVICTION_INTERVAL = 60 * 1000;
+    private static final Pattern THING_NAME = Pattern.compile("[a-zA-Z0-9:_-]{1,128}");
+
+    private volatile Set<String> names = newNameSet();
+    // materializing or evicting a thing doesn't change the listing
+    private volatile int namesVersion;
+    private volatile long lastEviction = System.currentTimeMillis();
+    private final AttributeIndex attributeIndex = new AttributeIndex();
+    private final ByAttributeNode byAttributeNode;
 
     public ThingsNode(Node parent) {
         super(parent, NODE_NAME, true);
-        setReInitDelay(30000);
+        setRefreshInterval(30000);
+
+        byAttributeNode = new ByAttributeNode(this, attributeIndex);
     }
 
     @Override
     public void init() {
+        // the listing is fetched without holding the node, its current
+        // children are served meanwhile
+        Map<String, Map<String, String>> things = iotClient.getThings(this);
+        updateNames(things.keySet());
+        attributeIndex.update(things);
+
+        super.init();
+    }
+
+    private void updateNames(Set<String> thingNames) {
+        Set<String> newNames = newNameSet();
+        newNames.addAll(thingNames);
+
+        synchronized (this) {
+            if (!newNames.equals(names)) {
+                childrenChanged = true;
+                namesVersion++;
+            }
+            names = newNames;
+
+            // drop the nodes of the things that no longer exist
+            Map<String, Node> newChildren = new ConcurrentHashMap<>();
+            for (Map.Entry<String, Node> entry : children.entrySet()) {
+                if (newNames.contains(entry.getKey())) {
+                    newChildren.put(entry.getKey(), entry.getValue());
+                }
+            }
+            replaceChildren(newChildren);
+        }
+    }
+
+    @Override
+    public Node getChild(String name) {
+        if (name.equals(ByAttributeNode.NODE_NAME)) {
+            return byAttributeNode;
+        }
+
+        Node node = children.get(name);
+        if (node == null) {
+            if (!names.contains(name)) {
+                return null;
+            }
+
+            synchronized (this) {
+                node = children.get(name);
+                if (node == null && names.contains(name)) {
+                    node = new ThingNode(this, name);
+                    putChild(node);
+                }
+            }
+            evictIdleThings();
+        }
+
+        if (node instanceof ThingNode) {
+            ((ThingNode) node).touch();
+        }
+        return node;
+    }
+
+    @Override
+    protected boolean canLookup() {
+        return true;
+    }
+
+    @Override
+    protected Node lookupMissing(String name) {
+        // probes like '.git' are rejected without a request
+        if (!THING_NAME.matcher(name).matches()) {
+            return null;
+        }
+
+        Map<String, String> attributes = iotClient.describeThing(name);
+        if (attributes == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            if (names.add(name)) {
+                namesVersion++;
+            }
+        }
+        attributeIndex.put(name, attributes);
+        return getChild(name);
+    }
+
+    private void evictIdleThings() {
+        long now = System.currentTimeMillis();
+        if (now - lastEviction < EVICTION_INTERVAL) {
+            return;
+        }
+
         synchronized (this) {
-            List<ThingNode> thingNodes = iotClient.getThings(this);
-            updateChildren(thingNodes);
+            if (now - lastEviction < EVICTION_INTERVAL) {
+                return;
+            }
+            lastEviction = now;
+
+            for (Node node : children.values()) {
+                if (node instanceof ThingNode && ((ThingNode) node).isIdle(now, IDLE_TIMEOUT)) {
+                    super.removeChild(node);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected int getListingVersion() {
+        return namesVersion;
+    }
+
+    @Override
+    protected String[] listNames() {
+        List<String> listing = new ArrayList<>(names);
+        // thing names can't start with a dot
+        listing.add(ByAttributeNode.NODE_NAME);
+        String[] thingNames = listing.toArray(new String[listing.size()]);
+        Arrays.sort(thingNames);
+        return thingNames;
+    }
 
-            super.init();
+    @Override
+    protected synchronized void removeChild(Node node) {
+        // the thing was deleted
+        if (children.get(node.getName()) == node && names.remove(node.getName())) {
+            attributeIndex.remove(node.getName());
+            namesVersion++;
         }
+        super.removeChild(node);
     }
 
     @Override
     public int mkdir(String name, ModeWrapper mode) {
         ThingNode node = iotClient.createThing(this, name);
-        addChildren(node);
+        synchronized (this) {
+            if (names.add(name)) {
+                namesVersion++;
+            }
+            addChildren(node);
+        }
 
         return 0;
     }
 
+    private static Set<String> newNameSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.topics;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Pool of direct buffers in power of two size classes, from MIN_SIZE to
+// MAX_SIZE. Released buffers are kept for reuse, up to a fixed number per
+// size class.
+public class BufferPool {
+
+    public static final int MIN_SIZE = 1024;
+    public static final int MAX_SIZE = 128 * 1024;
+    public static final int DEFAULT_MAX_POOLED = 16;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+
+    private final List<Queue<ByteBuffer>> pools;
+    private final AtomicInteger[] pooled;
+    private final int maxPooled;
+
+    public BufferPool() {
+        this(DEFAULT_MAX_POOLED);
+    }
+
+    public BufferPool(int maxPooled) {
+        int classes = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT + 1;
+        this.pools = new ArrayList<>(classes);
+        this.pooled = new AtomicInteger[classes];
+        for (int i = 0; i < classes; i++) {
+            pools.add(new ConcurrentLinkedQueue<ByteBuffer>());
+            pooled[i] = new AtomicInteger();
+        }
+        this.maxPooled = maxPooled;
+    }
+
+    // returns a cleared buffer with a capacity of at least size bytes
+    public ByteBuffer acquire(int size) {
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("Buffer size too large: " + size);
+        }
+
+        int sizeClass = sizeClass(size);
+        ByteBuffer buffer = pools.get(sizeClass).poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(MIN_SIZE << sizeClass);
+        }
+
+        pooled[sizeClass].decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (capacity > MAX_SIZE || !buffer.isDirect()) {
+            return;
+        }
+        int sizeClass = sizeClass(capacity);
+        if ((MIN_SIZE << sizeClass) != capacity) {
+            // not allocated by the pool
+            return;
+        }
+
+        if (pooled[sizeClass].incrementAndGet() > maxPooled) {
+            pooled[sizeClass].decrementAndGet();
+            return;
+        }
+        pools.get(sizeClass).offer(buffer);
+    }
+
+    private static int sizeClass(int size) {
+        if (size <= MIN_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.topics;
+
+import com.amazonaws.services.iot.client.fuse.node.Node;
+
+public class MessageBucketNode extends Node {
+
+    // one bucket per hour, in UTC
+    static final String NAME_FORMAT = "yyyy-MM-dd'T'HH";
+
+    public MessageBucketNode(Node parent, String name) {
+        super(parent, name, true);
+    }
+
+    void addMessage(MessageNode node) {
+        addChildren(node);
+    }
+
+    void removeMessage(MessageNode node) {
+        removeChild(node);
+    }
+
+    boolean isEmpty() {
+        return children.isEmpty();
+    }
+
+}
@@ -23,32 +23,105 @@ import net.fusejna.StructFuseFileInfo.FileInfoWrapper;
 
 public class MessageNode extends Node {
 
+	private final long sequence;
 	private final byte[] payload;
+	private final PayloadArena arena;
+	private final long handle;
+	private final int length;
+	private volatile boolean freed;
 
 	public MessageNode(Node parent, String name, byte[] payload) {
+		this(parent, name, -1, payload, null);
+	}
+
+	public MessageNode(Node parent, String name, long sequence, byte[] payload, PayloadArena arena) {
 		super(parent, name, false);
 
-		this.payload = payload;
+		this.sequence = sequence;
+
+		long handle = (arena != null) ? arena.allocate(payload) : -1;
+		if (handle < 0) {
+			this.payload = payload;
+			this.arena = null;
+		} else {
+			this.payload = null;
+			this.arena = arena;
+		}
+		this.handle = handle;
+		this.length = payload.length;
 		this.size = payload.length;
 	}
 
+	public long getSequence() {
+		return sequence;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public long getTimestamp() {
+		return creationTime;
+	}
+
+	// releases the payload once the message is no longer retained
+	public synchronized void free() {
+		if (arena != null && !freed) {
+			freed = true;
+			arena.release(handle);
+		}
+	}
+
+	// the retained message is dropped along with its payload, not just the
+	// directory entry
+	@Override
+	public int unlink(String path) {
+		Node bucket = parent;
+		if (sequence >= 0 && bucket.getParent() instanceof MessagesNode) {
+			((MessagesNode) bucket.getParent()).deleteMessage(this);
+			return 0;
+		}
+		return super.unlink(path);
+	}
+
+	@Override
+	public boolean isCacheable() {
+		return true;
+	}
+
 	@Override
 	public int read(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
 		if (offset < 0) {
 			offset = 0;
 		}
-		if (offset >= payload.length) {
+		if (offset >= length) {
 			return 0;
 		}
 		if (bufSize < 0) {
-			bufSize = payload.length;
+			bufSize = length;
+		}
+		if (offset + bufSize > length) {
+			bufSize = length - offset;
 		}
-		if (offset + bufSize > payload.length) {
-			bufSize = payload.length - offset;
+
+		if (arena == null) {
+			buf.put(payload, (int) offset, (int) bufSize);
+			return (int) bufSize;
 		}
 
-		buf.put(payload, (int) offset, (int) bufSize);
-		return (int) bufSize;
+		if (!arena.retain(handle)) {
+			return 0;
+		}
+		try {
+			// the slab may have been recycled since the message was evicted
+			if (freed) {
+				return 0;
+			}
+			arena.copy(handle, (int) offset, (int) bufSize, buf);
+			return (int) bufSize;
+		} finally {
+			arena.release(handle);
+		}
 	}
 
 }
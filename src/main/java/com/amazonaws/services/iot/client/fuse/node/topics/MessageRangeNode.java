@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.topics;
+
+import com.amazonaws.services.iot.client.fuse.node.LinkNode;
+import com.amazonaws.services.iot.client.fuse.node.Node;
+
+import net.fusejna.DirectoryFiller;
+
+// A transient view of the messages retained from a given sequence number. It
+// is never attached to the tree, so the listing is evaluated on every lookup.
+public class MessageRangeNode extends Node {
+
+    private final MessagesNode messagesNode;
+    private final long firstSequence;
+
+    public MessageRangeNode(Node parent, String name, MessagesNode messagesNode, long firstSequence) {
+        super(parent, name, true);
+
+        this.messagesNode = messagesNode;
+        this.firstSequence = firstSequence;
+        this.initDone = true;
+        this.detached = true;
+    }
+
+    @Override
+    public Node getChild(String name) {
+        long sequence = MessagesNode.parseSequenceName(name);
+        if (sequence < firstSequence) {
+            return null;
+        }
+
+        MessageNode node = messagesNode.getMessage(sequence);
+        if (node == null || !node.getName().equals(name)) {
+            return null;
+        }
+        return new LinkNode(this, name, node);
+    }
+
+    @Override
+    public int readdir(DirectoryFiller filler) {
+        long sequence = Math.max(firstSequence, messagesNode.getFirstSequence());
+        long nextSequence = messagesNode.getNextSequence();
+        for (; sequence < nextSequence; sequence++) {
+            MessageNode node = messagesNode.getMessage(sequence);
+            if (node != null && !node.isDetached()) {
+                filler.add(node.getName());
+            }
+        }
+        return 0;
+    }
+
+}
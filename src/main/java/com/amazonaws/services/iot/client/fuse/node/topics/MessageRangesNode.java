@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.topics;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+import com.amazonaws.services.iot.client.fuse.node.Node;
+
+import net.fusejna.DirectoryFiller;
+
+// The 'since' directory. Looking up 'since/<sequence>' or 'since/<time>' with
+// time formatted as 2016-01-01T10:00:00Z returns a directory of links to the
+// retained messages from that point on.
+public class MessageRangesNode extends Node {
+
+    private static final String NODE_NAME = "since";
+    private static final String TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+    private final MessagesNode messagesNode;
+
+    public MessageRangesNode(MessagesNode parent) {
+        super(parent, NODE_NAME, true);
+
+        this.messagesNode = parent;
+    }
+
+    @Override
+    public Node getChild(String name) {
+        long sequence = MessagesNode.parseSequenceName(name);
+        if (sequence < 0) {
+            long timestamp = parseTime(name);
+            if (timestamp < 0) {
+                return null;
+            }
+            sequence = messagesNode.findSequence(timestamp);
+        }
+
+        return new MessageRangeNode(this, name, messagesNode, sequence);
+    }
+
+    @Override
+    public int readdir(DirectoryFiller filler) {
+        return 0;
+    }
+
+    private static long parseTime(String name) {
+        SimpleDateFormat format = new SimpleDateFormat(TIME_FORMAT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        format.setLenient(false);
+        try {
+            return format.parse(name).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.topics;
+
+public class MessageRetention {
+
+    public static final int DEFAULT_MAX_COUNT = 10000;
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+    public static final long DEFAULT_MAX_AGE = 0;
+
+    private final int maxCount;
+    private final long maxBytes;
+    private final long maxAge;
+
+    public MessageRetention() {
+        this(DEFAULT_MAX_COUNT, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE);
+    }
+
+    // maxAge is in milliseconds, a value of 0 or less keeps messages regardless
+    // of their age
+    public MessageRetention(int maxCount, long maxBytes, long maxAge) {
+        if (maxCount <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of messages: " + maxCount);
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Invalid maximum size of messages: " + maxBytes);
+        }
+
+        this.maxCount = maxCount;
+        this.maxBytes = maxBytes;
+        this.maxAge = maxAge;
+    }
+
+    public int getMaxCount() {
+        return maxCount;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.topics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Fixed-capacity ring of retained messages, indexed by arrival sequence.
+// Messages are added by the MQTT callback thread only, while the oldest
+// entries can be evicted concurrently from any thread. All operations are
+// O(1) and lock-free.
+class MessageRing {
+
+    private final AtomicReferenceArray<MessageNode> slots;
+    private final int capacity;
+
+    // sequence of the oldest retained message
+    private final AtomicLong head = new AtomicLong();
+    // sequence of the next message to be added
+    private volatile long tail;
+
+    public MessageRing(int capacity) {
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail - head.get());
+    }
+
+    public long getFirstSequence() {
+        return head.get();
+    }
+
+    public long getNextSequence() {
+        return tail;
+    }
+
+    public MessageNode get(long seq) {
+        if (seq < head.get() || seq >= tail) {
+            return null;
+        }
+
+        MessageNode node = slots.get(index(seq));
+        if (node == null || node.getSequence() != seq) {
+            return null;
+        }
+        return node;
+    }
+
+    // returns the message overwritten by the new one, if the ring was full
+    public MessageNode add(MessageNode node) {
+        long seq = tail;
+
+        // move the head past the slot being reused before overwriting it, so
+        // concurrent evictions can't claim the new message
+        long minHead = seq + 1 - capacity;
+        while (true) {
+            long h = head.get();
+            if (h >= minHead || head.compareAndSet(h, minHead)) {
+                break;
+            }
+        }
+
+        MessageNode old = slots.getAndSet(index(seq), node);
+        tail = seq + 1;
+        return old;
+    }
+
+    // skips the slots of the messages removed out of order
+    public MessageNode peekOldest() {
+        while (true) {
+            long h = head.get();
+            if (h >= tail) {
+                return null;
+            }
+            MessageNode node = slots.get(index(h));
+            if (node != null) {
+                return node;
+            }
+            head.compareAndSet(h, h + 1);
+        }
+    }
+
+    // removes the message out of order, leaving its slot empty. Returns
+    // false if it was already evicted.
+    public boolean remove(MessageNode node) {
+        long seq = node.getSequence();
+        if (seq < head.get() || seq >= tail) {
+            return false;
+        }
+        return slots.compareAndSet(index(seq), node, null);
+    }
+
+    public MessageNode evictOldest() {
+        while (true) {
+            long h = head.get();
+            if (h >= tail) {
+                return null;
+            }
+
+            int i = index(h);
+            MessageNode node = slots.get(i);
+            if (!head.compareAndSet(h, h + 1)) {
+                continue;
+            }
+            if (node != null && slots.compareAndSet(i, node, null)) {
+                return node;
+            }
+        }
+    }
+
+    private int index(long seq) {
+        return (int) (seq % capacity);
+    }
+
+}
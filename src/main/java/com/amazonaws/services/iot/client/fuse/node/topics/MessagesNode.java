@@ -15,14 +15,246 @@
 
 package com.amazonaws.services.iot.client.fuse.node.topics;
 
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.amazonaws.services.iot.client.fuse.node.Node;
 
 public class MessagesNode extends Node {
 
 	private static final String NODE_NAME = "messages";
+	private static final long SWEEP_INTERVAL = 1000;
+	private static final long BUCKET_INTERVAL = 3600 * 1000;
+	private static final int SEQUENCE_NAME_LENGTH = 12;
+	private static final ScheduledExecutorService sweeper = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "message-sweeper");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final MessageRetention retention;
+	private final PayloadArena arena;
+	private final MessageRing ring;
+	private final AtomicLong bytes = new AtomicLong();
+	private final SimpleDateFormat bucketFormat;
+	private final Object arrival = new Object();
+	private final ScheduledFuture<?> sweep;
+	private volatile int waiters;
+
+	// only updated from the MQTT client's callback thread
+	private volatile MessageBucketNode currentBucket;
+	private long currentBucketEnd;
 
 	public MessagesNode(Node parent) {
+		this(parent, new MessageRetention(), null);
+	}
+
+	// payloads are kept in the given arena if not null, on the heap otherwise
+	public MessagesNode(Node parent, MessageRetention retention, PayloadArena arena) {
 		super(parent, NODE_NAME, true);
+
+		this.retention = retention;
+		this.arena = arena;
+		this.ring = new MessageRing(retention.getMaxCount());
+		this.bucketFormat = new SimpleDateFormat(MessageBucketNode.NAME_FORMAT);
+		this.bucketFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+		addChildren(new MessageRangesNode(this));
+
+		if (retention.getMaxAge() > 0) {
+			sweep = sweeper.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					evictExpired();
+				}
+			}, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+		} else {
+			sweep = null;
+		}
+	}
+
+	@Override
+	protected void detach() {
+		super.detach();
+		if (sweep != null) {
+			sweep.cancel(false);
+		}
+	}
+
+	public MessageRetention getRetention() {
+		return retention;
+	}
+
+	// called from the MQTT client's callback thread
+	public void addMessage(byte[] payload) {
+		MessageBucketNode bucket = getCurrentBucket();
+		long sequence = ring.getNextSequence();
+
+		MessageNode node = new MessageNode(bucket, getSequenceName(sequence), sequence, payload, arena);
+		bucket.addMessage(node);
+		bytes.addAndGet(node.getLength());
+
+		evict(ring.add(node));
+		if (waiters > 0) {
+			synchronized (arrival) {
+				arrival.notifyAll();
+			}
+		}
+
+		while (bytes.get() > retention.getMaxBytes() && ring.size() > 1) {
+			if (!evict(ring.evictOldest())) {
+				break;
+			}
+		}
+	}
+
+	// waits until the message with the given sequence has been received, the
+	// timeout expires or the waiters are woken up
+	boolean awaitMessage(long sequence, long timeout) throws InterruptedException {
+		synchronized (arrival) {
+			waiters++;
+			try {
+				if (ring.getNextSequence() <= sequence) {
+					arrival.wait(timeout);
+				}
+				return ring.getNextSequence() > sequence;
+			} finally {
+				waiters--;
+			}
+		}
+	}
+
+	// makes the waiting threads check their condition again
+	void wakeWaiters() {
+		synchronized (arrival) {
+			arrival.notifyAll();
+		}
+	}
+
+	MessageNode getMessage(long sequence) {
+		return ring.get(sequence);
+	}
+
+	long getFirstSequence() {
+		return ring.getFirstSequence();
+	}
+
+	long getNextSequence() {
+		return ring.getNextSequence();
+	}
+
+	// returns the sequence of the first retained message received at or after
+	// the given time
+	long findSequence(long timestamp) {
+		long low = ring.getFirstSequence();
+		long high = ring.getNextSequence();
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			MessageNode node = ring.get(mid);
+			if (node == null || node.getTimestamp() < timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	static String getSequenceName(long sequence) {
+		String str = Long.toString(sequence);
+		if (str.length() >= SEQUENCE_NAME_LENGTH) {
+			return str;
+		}
+
+		StringBuilder builder = new StringBuilder(SEQUENCE_NAME_LENGTH);
+		for (int i = str.length(); i < SEQUENCE_NAME_LENGTH; i++) {
+			builder.append('0');
+		}
+		return builder.append(str).toString();
+	}
+
+	static long parseSequenceName(String name) {
+		// 18 digits always fit in a long
+		if (name.isEmpty() || name.length() > 18) {
+			return -1;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+		}
+		return Long.parseLong(name);
+	}
+
+	private MessageBucketNode getCurrentBucket() {
+		long now = System.currentTimeMillis();
+		if (currentBucket == null || now >= currentBucketEnd || currentBucket.isDetached()) {
+			long start = now - now % BUCKET_INTERVAL;
+			String name = bucketFormat.format(new Date(start));
+
+			Node node = getChild(name);
+			if (node instanceof MessageBucketNode) {
+				// the clock went backwards
+				currentBucket = (MessageBucketNode) node;
+			} else {
+				currentBucket = new MessageBucketNode(this, name);
+				addChildren(currentBucket);
+			}
+			currentBucketEnd = start + BUCKET_INTERVAL;
+		}
+		return currentBucket;
+	}
+
+	private void evictExpired() {
+		long expiry = System.currentTimeMillis() - retention.getMaxAge();
+		while (true) {
+			MessageNode node = ring.peekOldest();
+			if (node == null || node.getTimestamp() > expiry) {
+				break;
+			}
+			evict(ring.evictOldest());
+		}
+	}
+
+	// drops a message deleted by the user. Its bucket is left in place, even
+	// if empty, for the rmdir that usually follows.
+	void deleteMessage(MessageNode node) {
+		if (ring.remove(node)) {
+			release(node);
+		}
+	}
+
+	private boolean evict(MessageNode node) {
+		if (node == null) {
+			return false;
+		}
+
+		MessageBucketNode bucket = release(node);
+		if (bucket.isEmpty() && bucket != currentBucket) {
+			removeChild(bucket);
+		}
+		return true;
+	}
+
+	private MessageBucketNode release(MessageNode node) {
+		MessageBucketNode bucket = (MessageBucketNode) node.getParent();
+		bucket.removeMessage(node);
+
+		bytes.addAndGet(-node.getLength());
+		node.free();
+		return bucket;
 	}
 
 }
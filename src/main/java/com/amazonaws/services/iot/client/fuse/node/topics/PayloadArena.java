@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.topics;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Stores message payloads in pooled direct buffers (slabs) outside of the
+// Java heap. A payload is addressed by a handle combining the slab index and
+// the offset in the slab. Slabs are filled sequentially, and returned to the
+// pool once all the payloads in them have been freed.
+//
+// By default the slabs take at most half of the JVM's direct memory limit,
+// leaving the rest to the publish buffers and the I/O libraries. If a slab
+// still can't be allocated, no more slabs are allocated and the payloads are
+// kept on the heap instead.
+public class PayloadArena {
+
+    public static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+    public static final int DEFAULT_MAX_SLABS = 1024;
+
+    private static final String MAX_DIRECT_MEMORY_OPTION = "-XX:MaxDirectMemorySize=";
+
+    private final int slabSize;
+    private final AtomicReferenceArray<Slab> slabs;
+    private final Queue<Slab> freeSlabs = new ConcurrentLinkedQueue<>();
+    private int slabCount;
+    private int maxSlabs;
+    private Slab current;
+
+    public PayloadArena() {
+        this(DEFAULT_SLAB_SIZE, getDefaultMaxSlabs(DEFAULT_SLAB_SIZE));
+    }
+
+    public PayloadArena(int slabSize, int maxSlabs) {
+        this.slabSize = slabSize;
+        this.slabs = new AtomicReferenceArray<>(maxSlabs);
+        this.maxSlabs = maxSlabs;
+    }
+
+    static int getDefaultMaxSlabs(int slabSize) {
+        long slabs = getMaxDirectMemory() / 2 / slabSize;
+        return (int) Math.max(1, Math.min(DEFAULT_MAX_SLABS, slabs));
+    }
+
+    // the -XX:MaxDirectMemorySize option if given, the JVM defaults it to
+    // the maximum heap size otherwise
+    private static long getMaxDirectMemory() {
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith(MAX_DIRECT_MEMORY_OPTION)) {
+                try {
+                    return parseSize(arg.substring(MAX_DIRECT_MEMORY_OPTION.length()));
+                } catch (RuntimeException e) {
+                    break;
+                }
+            }
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    private static long parseSize(String value) {
+        long unit = 1;
+        switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+        case 'k':
+            unit = 1024;
+            break;
+        case 'm':
+            unit = 1024 * 1024;
+            break;
+        case 'g':
+            unit = 1024 * 1024 * 1024;
+            break;
+        default:
+            return Long.parseLong(value);
+        }
+        return Long.parseLong(value.substring(0, value.length() - 1)) * unit;
+    }
+
+    // returns the handle of the stored payload, or -1 if it doesn't fit in
+    // the arena, in which case the caller should keep it on the heap
+    public synchronized long allocate(byte[] data) {
+        if (data.length > slabSize) {
+            return -1;
+        }
+
+        if (current == null || slabSize - current.position < data.length) {
+            Slab slab = freeSlabs.poll();
+            if (slab == null) {
+                if (slabCount >= maxSlabs) {
+                    return -1;
+                }
+                ByteBuffer buffer;
+                try {
+                    buffer = ByteBuffer.allocateDirect(slabSize);
+                } catch (OutOfMemoryError e) {
+                    // direct memory is exhausted, make do with the slabs
+                    // allocated so far
+                    maxSlabs = slabCount;
+                    return -1;
+                }
+                slab = new Slab(slabCount, buffer);
+                slabs.set(slabCount++, slab);
+            }
+            slab.open();
+
+            if (current != null) {
+                // drop the reference held while the slab was being filled
+                release(current);
+            }
+            current = slab;
+        }
+
+        int offset = current.position;
+        current.buffer.position(offset);
+        current.buffer.put(data);
+        current.position += data.length;
+        current.refs.incrementAndGet();
+
+        return ((long) current.index << 32) | offset;
+    }
+
+    // every successful allocate() or retain() must be paired with a release()
+    public boolean retain(long handle) {
+        return slabs.get((int) (handle >>> 32)).retain();
+    }
+
+    public void release(long handle) {
+        release(slabs.get((int) (handle >>> 32)));
+    }
+
+    // copies length bytes of the payload, starting from offset, into buf. The
+    // caller must hold a reference on the payload.
+    public void copy(long handle, int offset, int length, ByteBuffer buf) {
+        ByteBuffer src = slabs.get((int) (handle >>> 32)).buffer.duplicate();
+        int position = (int) handle + offset;
+        src.limit(position + length).position(position);
+        buf.put(src);
+    }
+
+    private void release(Slab slab) {
+        if (slab.refs.decrementAndGet() == 0) {
+            freeSlabs.offer(slab);
+        }
+    }
+
+    private static class Slab {
+
+        private final int index;
+        private final ByteBuffer buffer;
+        // number of live payloads and readers, plus one while being filled
+        private final AtomicInteger refs = new AtomicInteger();
+        private int position;
+
+        public Slab(int index, ByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+
+        public void open() {
+            position = 0;
+            refs.set(1);
+        }
+
+        public boolean retain() {
+            while (true) {
+                int count = refs.get();
+                if (count <= 0) {
+                    return false;
+                }
+                if (refs.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+    }
+
+}
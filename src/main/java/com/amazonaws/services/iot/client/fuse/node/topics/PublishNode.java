@@ -17,6 +17,8 @@ package com.amazonaws.services.iot.client.fuse.node.topics;
 
 import java.nio.ByteBuffer;
 
+import com.amazonaws.services.iot.client.fuse.PublishStatus;
+import com.amazonaws.services.iot.client.fuse.node.HandleTable;
 import com.amazonaws.services.iot.client.fuse.node.Node;
 
 import net.fusejna.ErrorCodes;
@@ -25,16 +27,20 @@ import net.fusejna.StructFuseFileInfo.FileInfoWrapper;
 public class PublishNode extends Node {
 
     private static final String NODE_NAME = "publish";
-    private static final int DEFAULT_BUFFER_SIZE = 1024;
-    private static final int MAX_BUFFER_SIZE = 128 * 1024;
+    private static final int MAX_BUFFER_SIZE = BufferPool.MAX_SIZE;
+    private static final BufferPool bufferPool = new BufferPool();
 
-    private ByteBuffer buffer;
+    private final HandleTable<Writer> writers = new HandleTable<>();
     private byte[] payload;
 
     public PublishNode(Node parent) {
         super(parent, NODE_NAME, false);
+    }
 
-        buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+    @Override
+    public int open(String path, FileInfoWrapper info) {
+        writers.open(info, new Writer());
+        return 0;
     }
 
     @Override
@@ -67,7 +73,7 @@ public class PublishNode extends Node {
     }
 
     @Override
-    public synchronized int write(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
+    public int write(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
         if (bufSize <= 0) {
             return 0;
         }
@@ -78,45 +84,121 @@ public class PublishNode extends Node {
             return -ErrorCodes.ENOSPC();
         }
 
-        if (offset + bufSize > buffer.capacity()) {
-            long newSize = offset + bufSize + DEFAULT_BUFFER_SIZE;
-            ByteBuffer newBuffer = ByteBuffer.allocate((int) newSize);
-            buffer.flip();
-            newBuffer.put(buffer);
-            buffer = newBuffer;
+        Writer writer = writers.get(info);
+        if (writer == null) {
+            return -ErrorCodes.EBADF();
         }
 
-        byte[] data = new byte[(int) bufSize];
-        buf.get(data);
+        synchronized (writer) {
+            int end = (int) (offset + bufSize);
+            ByteBuffer buffer = writer.buffer;
+            if (buffer == null) {
+                buffer = bufferPool.acquire(end);
+                writer.buffer = buffer;
+            } else if (end > buffer.capacity()) {
+                ByteBuffer newBuffer = bufferPool.acquire(end);
+                buffer.position(0);
+                buffer.limit(writer.length);
+                newBuffer.put(buffer);
+                bufferPool.release(buffer);
+                buffer = newBuffer;
+                writer.buffer = buffer;
+            }
+
+            // gaps left by writing past the end are zero-filled
+            buffer.limit(buffer.capacity());
+            for (int i = writer.length; i < offset; i++) {
+                buffer.put(i, (byte) 0);
+            }
+
+            ByteBuffer src = buf.duplicate();
+            src.limit(src.position() + (int) bufSize);
+            buffer.position((int) offset);
+            buffer.put(src);
+
+            if (end > writer.length) {
+                writer.length = end;
+            }
+        }
 
-        int pos = buffer.position();
-        buffer.position((int) offset);
-        buffer.put(data);
+        return (int) bufSize;
+    }
 
-        if (pos > buffer.position()) {
-            buffer.position(pos);
+    // the data written is published when the file is closed, without waiting
+    // for it to be delivered. close() reports the failures of the earlier
+    // publishes through the same handle, fsync() also waits for this one.
+    @Override
+    public int flush(String path, FileInfoWrapper info) {
+        Writer writer = writers.get(info);
+        if (writer == null) {
+            return -ErrorCodes.EBADF();
         }
 
-        return (int) bufSize;
+        publishData(writer);
+        return writer.status.takeError();
     }
 
     @Override
-    public synchronized int release(String path, FileInfoWrapper info) {
-        publishData();
+    public int fsync(String path, FileInfoWrapper info) {
+        Writer writer = writers.get(info);
+        if (writer == null) {
+            return -ErrorCodes.EBADF();
+        }
+
+        publishData(writer);
+        try {
+            return writer.status.awaitCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -ErrorCodes.EINTR();
+        }
+    }
+
+    @Override
+    public int release(String path, FileInfoWrapper info) {
+        Writer writer = writers.release(info);
+        if (writer != null) {
+            publishData(writer);
+        }
         return 0;
     }
 
-    private void publishData() {
+    private void publishData(Writer writer) {
         TopicNode topicNode = (TopicNode) parent;
 
-        buffer.flip();
-        if (buffer.hasRemaining()) {
-            size = buffer.remaining();
-            payload = new byte[(int) size];
+        // the client library takes the payload as an array, which is also
+        // kept as the content of the file
+        byte[] data = null;
+        synchronized (writer) {
+            ByteBuffer buffer = writer.buffer;
+            if (buffer != null) {
+                if (writer.length > 0) {
+                    data = new byte[writer.length];
+                    buffer.position(0);
+                    buffer.limit(writer.length);
+                    buffer.get(data);
+                }
+                bufferPool.release(buffer);
+                writer.buffer = null;
+                writer.length = 0;
+            }
+        }
 
-            buffer.get(payload);
-            iotClient.publish(topicNode.getTopic(), payload);
+        if (data != null) {
+            synchronized (this) {
+                size = data.length;
+                payload = data;
+            }
+            iotClient.publishAsync(topicNode.getTopic(), data, writer.status);
         }
-        buffer.clear();
     }
+
+    private static class Writer {
+
+        private ByteBuffer buffer;
+        private int length;
+        private final PublishStatus status = new PublishStatus();
+
+    }
+
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node.topics;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.amazonaws.services.iot.client.fuse.PublishStatus;
+import com.amazonaws.services.iot.client.fuse.node.HandleTable;
+import com.amazonaws.services.iot.client.fuse.node.Node;
+
+import net.fusejna.ErrorCodes;
+import net.fusejna.StructFuseFileInfo.FileInfoWrapper;
+
+// Reading the stream file blocks until new messages are received on the
+// topic. Each message is returned as a frame made of a header line with the
+// message sequence and payload length, followed by the payload and a newline.
+// Writing to the stream file publishes each line written as a message.
+public class StreamNode extends Node {
+
+    private static final String NODE_NAME = "stream";
+    private static final long WAIT_INTERVAL = 1000;
+    private static final int MAX_RECORD_SIZE = 128 * 1024;
+
+    private final MessagesNode messagesNode;
+    private final HandleTable<Cursor> cursors = new HandleTable<>();
+
+    public StreamNode(Node parent, MessagesNode messagesNode) {
+        super(parent, NODE_NAME, false);
+
+        this.messagesNode = messagesNode;
+    }
+
+    @Override
+    public int open(String path, FileInfoWrapper info) {
+        // readers only get the messages received after the file is opened
+        cursors.open(info, new Cursor(messagesNode.getNextSequence()));
+        info.nonseekable(true).direct_io(true);
+        return 0;
+    }
+
+    @Override
+    public int release(String path, FileInfoWrapper info) {
+        Cursor cursor = cursors.release(info);
+        if (cursor != null) {
+            // a read blocked on the handle returns end of file
+            cursor.closed = true;
+            messagesNode.wakeWaiters();
+
+            synchronized (cursor.record) {
+                // an unterminated last line is published on close
+                publish(cursor, cursor.record.toByteArray());
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int write(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
+        Cursor cursor = cursors.get(info);
+        if (cursor == null) {
+            return -ErrorCodes.EBADF();
+        }
+
+        byte[] data = new byte[(int) bufSize];
+        buf.get(data);
+
+        // reads may block while holding the cursor, writes only lock the record
+        synchronized (cursor.record) {
+            // nothing is published unless every line fits
+            int start = 0;
+            int length = cursor.record.size();
+            for (int i = 0; i <= data.length; i++) {
+                if (i < data.length && data[i] != '\n') {
+                    continue;
+                }
+                if (length + i - start > MAX_RECORD_SIZE) {
+                    cursor.record.reset();
+                    return -ErrorCodes.EMSGSIZE();
+                }
+                start = i + 1;
+                length = 0;
+            }
+
+            start = 0;
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] != '\n') {
+                    continue;
+                }
+
+                if (cursor.record.size() > 0) {
+                    cursor.record.write(data, start, i - start);
+                    publish(cursor, cursor.record.toByteArray());
+                    cursor.record.reset();
+                } else if (i > start) {
+                    publish(cursor, Arrays.copyOfRange(data, start, i));
+                }
+                start = i + 1;
+            }
+            cursor.record.write(data, start, data.length - start);
+        }
+
+        return (int) bufSize;
+    }
+
+    @Override
+    public int flush(String path, FileInfoWrapper info) {
+        Cursor cursor = cursors.get(info);
+        if (cursor == null) {
+            return -ErrorCodes.EBADF();
+        }
+
+        return cursor.status.takeError();
+    }
+
+    @Override
+    public int fsync(String path, FileInfoWrapper info) {
+        Cursor cursor = cursors.get(info);
+        if (cursor == null) {
+            return -ErrorCodes.EBADF();
+        }
+
+        try {
+            return cursor.status.awaitCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -ErrorCodes.EINTR();
+        }
+    }
+
+    @Override
+    public int truncate(String path, long offset) {
+        return 0;
+    }
+
+    private void publish(Cursor cursor, byte[] payload) {
+        if (payload.length > 0) {
+            iotClient.publishAsync(((TopicNode) parent).getTopic(), payload, cursor.status);
+        }
+    }
+
+    @Override
+    public int read(String path, ByteBuffer buf, long bufSize, long offset, FileInfoWrapper info) {
+        Cursor cursor = cursors.get(info);
+        if (cursor == null) {
+            return -ErrorCodes.EBADF();
+        }
+
+        synchronized (cursor) {
+            int count = 0;
+            while (!cursor.closed) {
+                if (cursor.pending != null) {
+                    count += cursor.drain(buf, (int) bufSize - count);
+                }
+                if (count >= bufSize) {
+                    break;
+                }
+
+                // skip the messages evicted before they could be read
+                long firstSequence = messagesNode.getFirstSequence();
+                if (cursor.sequence < firstSequence) {
+                    cursor.sequence = firstSequence;
+                }
+
+                if (cursor.sequence >= messagesNode.getNextSequence()) {
+                    if (count > 0) {
+                        break;
+                    }
+                    try {
+                        messagesNode.awaitMessage(cursor.sequence, WAIT_INTERVAL);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return -ErrorCodes.EINTR();
+                    }
+                    continue;
+                }
+
+                MessageNode node = messagesNode.getMessage(cursor.sequence++);
+                if (node != null) {
+                    cursor.pending = frame(node);
+                }
+            }
+            return count;
+        }
+    }
+
+    private static ByteBuffer frame(MessageNode node) {
+        byte[] header = (node.getSequence() + " " + node.getLength() + "\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer frame = ByteBuffer.allocate(header.length + node.getLength() + 1);
+        frame.put(header);
+        if (node.read(null, frame, node.getLength(), 0, null) != node.getLength()) {
+            // evicted while being read
+            return null;
+        }
+        frame.put((byte) '\n');
+        frame.flip();
+        return frame;
+    }
+
+    private static class Cursor {
+
+        private long sequence;
+        private ByteBuffer pending;
+        private volatile boolean closed;
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        private final PublishStatus status = new PublishStatus();
+
+        public Cursor(long sequence) {
+            this.sequence = sequence;
+        }
+
+        public int drain(ByteBuffer buf, int length) {
+            int n = Math.min(pending.remaining(), length);
+            ByteBuffer src = pending.duplicate();
+            src.limit(src.position() + n);
+            buf.put(src);
+
+            pending.position(pending.position() + n);
+            if (!pending.hasRemaining()) {
+                pending = null;
+            }
+            return n;
+        }
+
+    }
+
+}
@@ -20,20 +20,37 @@ import com.amazonaws.services.iot.client.fuse.node.Node;
 public class TopicNode extends Node {
 
     private final String topic;
+    private final MessagesNode messagesNode;
 
     public TopicNode(Node parent, String name) {
+        this(parent, name, new MessageRetention(), null);
+    }
+
+    public TopicNode(Node parent, String name, MessageRetention retention, PayloadArena arena) {
         super(parent, sanitize(name), true);
 
         this.topic = name;
+        this.messagesNode = new MessagesNode(this, retention, arena);
 
         addChildren(new PublishNode(this));
-        addChildren(new MessagesNode(this));
+        addChildren(messagesNode);
+        addChildren(new StreamNode(this, messagesNode));
+    }
+
+    @Override
+    protected void detach() {
+        super.detach();
+        messagesNode.detach();
     }
 
     public String getTopic() {
         return topic;
     }
 
+    public MessagesNode getMessagesNode() {
+        return messagesNode;
+    }
+
     private static String sanitize(String name) {
         return name.replace('/', '_');
     }
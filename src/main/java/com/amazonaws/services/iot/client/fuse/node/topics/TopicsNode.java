@@ -22,16 +22,19 @@ import com.amazonaws.services.iot.client.fuse.node.Node;
 public class TopicsNode extends Node {
 
     private static final String NODE_NAME = "topics";
-    private static final String MESSAGES_NODE_NAME = "messages";
 
     public TopicsNode(Node parent, Set<String> topics) {
+        this(parent, topics, new MessageRetention(), null);
+    }
+
+    public TopicsNode(Node parent, Set<String> topics, MessageRetention retention, PayloadArena arena) {
         super(parent, NODE_NAME, true);
 
         if (topics != null) {
             for (String topic : topics) {
-                TopicNode node = new TopicNode(this, topic);
+                TopicNode node = new TopicNode(this, topic, retention, arena);
 
-                iotClient.subscribe(node.getChild(MESSAGES_NODE_NAME), topic);
+                iotClient.subscribe(node.getMessagesNode(), topic);
 
                 addChildren(node);
             }
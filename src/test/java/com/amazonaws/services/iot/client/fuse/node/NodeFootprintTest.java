@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.fuse.node;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NodeFootprintTest {
+
+    private static final int ENTRIES = 1000000;
+    // node, name and map entry of a leaf, about 185 bytes on a 64-bit JVM
+    // with compressed references. A leaf with its own map, a Date and an
+    // AtomicBoolean took about 100 bytes more.
+    private static final long MAX_BYTES_PER_ENTRY = 256;
+
+    @Test
+    public void leavesShareTheEmptyChildMap() {
+        Node dir = new Node(new RootNode(), "dir", true);
+        Node first = new Node(dir, "a", false);
+        Node second = new Node(dir, "b", false);
+
+        assertSame(ArrayChildMap.EMPTY, first.children);
+        assertSame(first.children, second.children);
+    }
+
+    @Test
+    public void smallDirectoriesUseSortedArrays() {
+        Node dir = new Node(new RootNode(), "dir", true);
+        for (int i = 0; i < 8; i++) {
+            dir.addChildren(new Node(dir, "n" + i, false));
+        }
+
+        assertTrue(dir.children instanceof ArrayChildMap);
+    }
+
+    @Test
+    public void millionEntryDirectoryFootprint() {
+        Node dir = new Node(new RootNode(), "dir", true);
+
+        long before = usedHeap();
+        for (int i = 0; i < ENTRIES; i++) {
+            dir.addChildren(new Node(dir, "n" + i, false));
+        }
+        long after = usedHeap();
+
+        long perEntry = (after - before) / ENTRIES;
+        assertTrue("retained " + perEntry + " bytes per entry", perEntry <= MAX_BYTES_PER_ENTRY);
+        assertSame(dir, dir.getChild("n" + (ENTRIES - 1)).getParent());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}